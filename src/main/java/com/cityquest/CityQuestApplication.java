@@ -3,6 +3,7 @@ package com.cityquest;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.mybatis.spring.annotation.MapperScan;
 
 /**
@@ -11,6 +12,7 @@ import org.mybatis.spring.annotation.MapperScan;
 @SpringBootApplication
 @MapperScan("com.cityquest.mapper")
 @ComponentScan(basePackages = "com.cityquest")
+@EnableScheduling
 public class CityQuestApplication {
 
     public static void main(String[] args) {
@@ -1,8 +1,10 @@
 package com.cityquest.config;
 
-import com.cityquest.entity.UserInfo;
-import com.cityquest.service.UserService;
+import com.cityquest.dto.user.AuthPrincipal;
+import com.cityquest.dto.user.UserSummary;
+import com.cityquest.service.AuthPrincipalCacheService;
 import com.cityquest.service.OnlineUserService;
+import com.cityquest.service.UserSummaryCacheService;
 import com.cityquest.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.lang.NonNull;
@@ -26,11 +28,13 @@ public class JwtInterceptor implements HandlerInterceptor {
     private JwtUtil jwtUtil;
 
     @Autowired
-    @SuppressWarnings("unused")
-    private UserService userService;
+    private OnlineUserService onlineUserService;
 
     @Autowired
-    private OnlineUserService onlineUserService;
+    private UserSummaryCacheService userSummaryCacheService;
+
+    @Autowired
+    private AuthPrincipalCacheService authPrincipalCacheService;
 
     @Override
     public boolean preHandle(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull Object handler) throws Exception {
@@ -97,8 +101,13 @@ public class JwtInterceptor implements HandlerInterceptor {
             return false;
         }
         
-        // 验证token
-        if (!jwtUtil.validateToken(token)) {
+        // 快速路径：该token近期已通过全部校验，且期间没有失效事件
+        if (authPrincipalCacheService.get(token) != null) {
+            return true;
+        }
+        // 验证token（只解析一次）
+        Map<String, Object> claims = jwtUtil.parseToken(token);
+        if (claims == null) {
             response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             response.setContentType("application/json;charset=UTF-8");
             response.getWriter().write("{\"success\":false,\"message\":\"token无效或已过期\"}");
@@ -107,9 +116,10 @@ public class JwtInterceptor implements HandlerInterceptor {
         
         // 检查用户状态：如果status=0（离线），强制下线
         try {
-            String userId = jwtUtil.getUserIdFromToken(token);
-            if (userId != null) {
-                Long userIdLong = Long.parseLong(userId);
+            Object userIdClaim = claims.get("userId");
+            if (userIdClaim != null) {
+                Long userIdLong = Long.parseLong(userIdClaim.toString());
+                long generation = authPrincipalCacheService.currentGeneration(userIdLong);
 
                 if (onlineUserService.isForceLoggedOut(userIdLong)) {
                     onlineUserService.markOffline(userIdLong);
@@ -129,7 +139,7 @@ public class JwtInterceptor implements HandlerInterceptor {
                     return false;
                 }
 
-                UserInfo user = userService.getUserById(userIdLong);
+                UserSummary user = userSummaryCacheService.get(userIdLong);
                 if (user != null && user.getStatus() != null && user.getStatus() == 0) {
                     // 用户状态为0（离线），强制下线
                     response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
@@ -137,6 +147,14 @@ public class JwtInterceptor implements HandlerInterceptor {
                     response.getWriter().write("{\"success\":false,\"message\":\"账号已被强制下线，请重新登录\"}");
                     return false;
                 }
+
+                // 全部校验通过，缓存到token过期为止；强制下线、重新登录等事件会主动清除
+                Object exp = claims.get("exp");
+                if (user != null && exp instanceof Number) {
+                    Object role = claims.get("role");
+                    authPrincipalCacheService.put(token, new AuthPrincipal(userIdLong,
+                            role != null ? role.toString() : null, ((Number) exp).longValue() * 1000), generation);
+                }
             }
         } catch (Exception e) {
             // 检查失败，继续验证token（避免因检查错误导致正常用户无法访问）
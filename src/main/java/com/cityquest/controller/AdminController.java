@@ -1,5 +1,7 @@
 package com.cityquest.controller;
 
+import com.cityquest.dto.task.TaskImportJob;
+import com.cityquest.dto.task.TaskImportResult;
 import com.cityquest.entity.TaskInfo;
 import com.cityquest.entity.UserInfo;
 import com.cityquest.entity.ProductInfo;
@@ -13,7 +15,12 @@ import com.cityquest.service.ProductService;
 import com.cityquest.service.ProductCategoryService;
 import com.cityquest.service.ExchangeOrderService;
 import com.cityquest.service.QiniuService;
+import com.cityquest.service.TaskImportJobService;
+import com.cityquest.service.FollowGraphService;
+import com.cityquest.service.CatalogCacheService;
+import com.cityquest.service.UserSummaryCacheService;
 import com.cityquest.util.JwtUtil;
+import com.cityquest.websocket.ChatSessionRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
@@ -21,7 +28,6 @@ import org.springframework.http.MediaType;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -42,6 +48,21 @@ public class AdminController {
     @Autowired
     private TaskService taskService;
 
+    @Autowired
+    private TaskImportJobService taskImportJobService;
+
+    @Autowired
+    private UserSummaryCacheService userSummaryCacheService;
+
+    @Autowired
+    private FollowGraphService followGraphService;
+
+    @Autowired
+    private CatalogCacheService catalogCacheService;
+
+    @Autowired
+    private ChatSessionRegistry chatSessionRegistry;
+
     @Autowired
     private RecordService recordService;
 
@@ -68,6 +89,30 @@ public class AdminController {
 
     
 
+    /**
+     * 获取缓存命中统计
+     */
+    @GetMapping("/cache/stats")
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("userSummary", userSummaryCacheService.getStats());
+        response.put("followGraph", followGraphService.getStats());
+        response.put("catalog", catalogCacheService.getStats());
+        return response;
+    }
+
+    /**
+     * 获取聊天WebSocket出站队列统计
+     */
+    @GetMapping("/ws/stats")
+    public Map<String, Object> getWebSocketStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.putAll(chatSessionRegistry.getStats());
+        return response;
+    }
+
     /**
      * 获取统计数据
      */
@@ -158,7 +203,7 @@ public class AdminController {
                 // 用户名
                 String username = "用户" + record.getUserId();
                 try {
-                    com.cityquest.entity.UserInfo u = userService.getUserById(record.getUserId().longValue());
+                    com.cityquest.dto.user.UserSummary u = userSummaryCacheService.get(record.getUserId().longValue());
                     if (u != null && u.getUsername() != null) username = u.getUsername();
                 } catch (Exception ignored) {}
                 item.put("username", username);
@@ -438,7 +483,7 @@ public class AdminController {
     }
 
     /**
-     * 导入任务
+     * 导入任务（异步执行，返回作业ID，通过 /admin/tasks/import/{jobId} 查询进度）
      */
     @PostMapping("/tasks/import")
     public Map<String, Object> importTasks(@RequestParam("file") org.springframework.web.multipart.MultipartFile file,
@@ -450,22 +495,14 @@ public class AdminController {
                 response.put("message", "文件不能为空");
                 return response;
             }
-            
-            try (InputStream inputStream = file.getInputStream()) {
-                Integer adminId = getCurrentAdminId(request);
-                com.cityquest.dto.task.TaskImportResult result =
-                        taskService.importTasks(inputStream, file.getOriginalFilename(),
-                                adminId != null ? adminId.longValue() : null);
-
-                boolean allSuccessful = result.getFailedCount() == 0 && result.getSuccessCount() > 0;
-                response.put("success", allSuccessful);
-                response.put("message", String.format("导入完成：成功 %d 条，失败 %d 条",
-                        result.getSuccessCount(), result.getFailedCount()));
-                response.put("successCount", result.getSuccessCount());
-                response.put("failedCount", result.getFailedCount());
-                response.put("totalRows", result.getTotalRows());
-                response.put("failures", result.getFailures());
-            }
+
+            Integer adminId = getCurrentAdminId(request);
+            TaskImportJob job = taskImportJobService.submit(file,
+                    adminId != null ? adminId.longValue() : null);
+            response.put("success", true);
+            response.put("message", "导入已提交，正在后台处理");
+            response.put("jobId", job.getJobId());
+            response.put("status", job.getStatus());
         } catch (IllegalArgumentException e) {
             response.put("success", false);
             response.put("message", e.getMessage());
@@ -479,6 +516,41 @@ public class AdminController {
         return response;
     }
 
+    /**
+     * 查询任务导入进度
+     */
+    @GetMapping("/tasks/import/{jobId}")
+    public Map<String, Object> getImportJob(@PathVariable String jobId) {
+        Map<String, Object> response = new HashMap<>();
+        TaskImportJob job = taskImportJobService.getJob(jobId);
+        if (job == null) {
+            response.put("success", false);
+            response.put("message", "导入作业不存在或已过期");
+            return response;
+        }
+        TaskImportResult result = job.getResult();
+        response.put("success", true);
+        response.put("jobId", job.getJobId());
+        response.put("fileName", job.getFileName());
+        response.put("status", job.getStatus());
+        response.put("finished", job.isFinished());
+        response.put("createTime", job.getCreateTime());
+        response.put("finishTime", job.getFinishTime());
+        response.put("totalRows", result.getTotalRows());
+        response.put("successCount", result.getSuccessCount());
+        response.put("failedCount", result.getFailedCount());
+        response.put("failures", result.getFailures());
+        if (TaskImportJob.STATUS_COMPLETED.equals(job.getStatus())) {
+            response.put("message", String.format("导入完成：成功 %d 条，失败 %d 条",
+                    result.getSuccessCount(), result.getFailedCount()));
+        } else if (TaskImportJob.STATUS_FAILED.equals(job.getStatus())) {
+            response.put("message", "导入失败: " + job.getMessage());
+        } else {
+            response.put("message", "导入进行中");
+        }
+        return response;
+    }
+
     /**
      * 导出模板
      */
@@ -861,7 +933,7 @@ public class AdminController {
 
                     // 用户名、头像
                     try {
-                        com.cityquest.entity.UserInfo u = userService.getUserById(r.getUserId().longValue());
+                        com.cityquest.dto.user.UserSummary u = userSummaryCacheService.get(r.getUserId().longValue());
                         if (u != null) {
                             m.put("username", u.getUsername());
                             m.put("avatar", u.getAvatar());
@@ -1539,10 +1611,15 @@ public class AdminController {
     public Map<String, Object> getOrders(@RequestParam(required = false) Integer status,
                                          @RequestParam(required = false) String keyword,
                                          @RequestParam(defaultValue = "1") Integer page,
-                                         @RequestParam(defaultValue = "10") Integer pageSize) {
+                                         @RequestParam(defaultValue = "10") Integer pageSize,
+                                         @RequestParam(required = false) String cursor,
+                                         @RequestParam(defaultValue = "true") boolean withTotal) {
         Map<String, Object> response = new HashMap<>();
         try {
-            Map<String, Object> result = orderService.getOrderList(null, status, keyword, page, pageSize);
+            // 传入 cursor 参数（首页可为空字符串）时使用游标分页，否则按页码分页
+            Map<String, Object> result = cursor != null
+                    ? orderService.getOrderListByCursor(null, status, keyword, cursor, pageSize, withTotal)
+                    : orderService.getOrderList(null, status, keyword, page, pageSize);
             response.put("success", true);
             response.putAll(result);
         } catch (Exception e) {
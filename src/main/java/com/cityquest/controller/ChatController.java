@@ -1,17 +1,24 @@
 package com.cityquest.controller;
 
 import com.cityquest.dto.chat.ChatMessageDTO;
+import com.cityquest.dto.chat.ChatReadReceipt;
 import com.cityquest.dto.chat.ChatSendRequest;
 import com.cityquest.dto.chat.ChatSessionDTO;
 import com.cityquest.dto.chat.ChatSessionCreateRequest;
+import com.cityquest.dto.user.UserSummary;
 import com.cityquest.entity.ChatMessage;
 import com.cityquest.entity.ChatSession;
 import com.cityquest.service.ChatService;
+import com.cityquest.service.UserSummaryCacheService;
 import com.cityquest.util.JwtUtil;
+import com.cityquest.websocket.ChatWebSocketHandler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,6 +31,12 @@ public class ChatController {
     @Autowired
     private ChatService chatService;
 
+    @Autowired
+    private UserSummaryCacheService userSummaryCacheService;
+
+    @Autowired
+    private ChatWebSocketHandler chatWebSocketHandler;
+
     @Autowired
     private JwtUtil jwtUtil;
 
@@ -31,8 +44,13 @@ public class ChatController {
     public Map<String, Object> listSessions(HttpServletRequest request) {
         Long userId = getUserId(request);
         List<ChatSession> sessions = chatService.listUserSessions(userId);
+        List<Long> peerIds = new ArrayList<>(sessions.size());
+        for (ChatSession session : sessions) {
+            peerIds.add(peerIdOf(session, userId));
+        }
+        Map<Long, UserSummary> peers = userSummaryCacheService.getAll(peerIds);
         List<ChatSessionDTO> dtoList = sessions.stream()
-                .map(this::toDTO)
+                .map(session -> toDTO(session, userId, peers))
                 .collect(Collectors.toList());
 
         Map<String, Object> result = new HashMap<>();
@@ -49,7 +67,10 @@ public class ChatController {
             throw new RuntimeException("targetUserId不能为空");
         }
         ChatSession session = chatService.getOrCreateSession(userId, body.getTargetUserId());
-        ChatSessionDTO dto = toDTO(session);
+        Long peerId = peerIdOf(session, userId);
+        UserSummary peer = userSummaryCacheService.get(peerId);
+        ChatSessionDTO dto = toDTO(session, userId,
+                peer != null ? Collections.singletonMap(peerId, peer) : Collections.emptyMap());
         Map<String, Object> result = new HashMap<>();
         result.put("success", true);
         result.put("session", dto);
@@ -59,8 +80,10 @@ public class ChatController {
     @GetMapping("/messages")
     public Map<String, Object> listMessages(HttpServletRequest request,
                                             @RequestParam String sessionId,
-                                            @RequestParam(defaultValue = "1") Integer page,
-                                            @RequestParam(defaultValue = "20") Integer pageSize) {
+                                            @RequestParam(required = false) Integer page,
+                                            @RequestParam(defaultValue = "20") Integer pageSize,
+                                            @RequestParam(required = false) Long beforeMessageId,
+                                            @RequestParam(required = false) Long afterMessageId) {
         Long userId = getUserId(request);
         
         // 处理sessionId参数（可能是Long或String类型）
@@ -74,12 +97,29 @@ public class ChatController {
             return result;
         }
         
-        List<ChatMessage> messages = chatService.getSessionMessages(finalSessionId, userId, page, pageSize);
+        // 仅传页码时沿用偏移分页，否则按消息ID游标翻页（afterMessageId 用于重连后同步）
+        if (page != null && beforeMessageId == null && afterMessageId == null) {
+            List<ChatMessage> messages = chatService.getSessionMessages(finalSessionId, userId, page, pageSize);
+            List<ChatMessageDTO> dtoList = messages.stream()
+                    .map(this::toDTO)
+                    .collect(Collectors.toList());
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", true);
+            result.put("list", dtoList);
+            result.put("items", dtoList);
+            return result;
+        }
+
+        Map<String, Object> seek = chatService.getSessionMessagesBySeek(finalSessionId, userId,
+                beforeMessageId, afterMessageId, pageSize);
+        @SuppressWarnings("unchecked")
+        List<ChatMessage> messages = (List<ChatMessage>) seek.get("list");
         List<ChatMessageDTO> dtoList = messages.stream()
                 .map(this::toDTO)
                 .collect(Collectors.toList());
 
-        Map<String, Object> result = new HashMap<>();
+        Map<String, Object> result = new HashMap<>(seek);
         result.put("success", true);
         result.put("list", dtoList);
         result.put("items", dtoList);
@@ -108,7 +148,8 @@ public class ChatController {
     }
 
     @PostMapping("/sessions/{sessionId}/read")
-    public Map<String, Object> markAsRead(HttpServletRequest request, @PathVariable String sessionId) {
+    public Map<String, Object> markAsRead(HttpServletRequest request, @PathVariable String sessionId,
+                                          @RequestParam(required = false) Long lastReadMessageId) throws IOException {
         Long userId = getUserId(request);
         
         // 处理sessionId参数（可能是Long或String类型）
@@ -122,9 +163,11 @@ public class ChatController {
             return result;
         }
         
-        chatService.markSessionMessagesAsRead(finalSessionId, userId);
+        ChatReadReceipt receipt = chatService.markSessionMessagesAsRead(finalSessionId, userId, lastReadMessageId);
+        chatWebSocketHandler.notifyRead(receipt);
         Map<String, Object> result = new HashMap<>();
         result.put("success", true);
+        result.put("lastReadMessageId", receipt.getLastReadMessageId());
         return result;
     }
 
@@ -151,7 +194,13 @@ public class ChatController {
         return Long.parseLong(userIdStr);
     }
 
-    private ChatSessionDTO toDTO(ChatSession session) {
+    private Long peerIdOf(ChatSession session, Long userId) {
+        return userId.equals(session.getUserAId()) ? session.getUserBId() : session.getUserAId();
+    }
+
+    private ChatSessionDTO toDTO(ChatSession session, Long userId, Map<Long, UserSummary> peers) {
+        Long peerId = peerIdOf(session, userId);
+        UserSummary peer = peers.get(peerId);
         return ChatSessionDTO.builder()
                 .id(session.getId())
                 .userAId(session.getUserAId())
@@ -163,6 +212,14 @@ public class ChatController {
                 .unreadCountB(session.getUnreadCountB())
                 .createTime(session.getCreateTime())
                 .updateTime(session.getUpdateTime())
+                .peerId(peerId)
+                .peerNickname(peer != null ? peer.getDisplayName() : null)
+                .peerAvatar(peer != null ? peer.getAvatar() : null)
+                .lastReadIdA(session.getLastReadIdA())
+                .lastReadIdB(session.getLastReadIdB())
+                .unreadCount(userId.equals(session.getUserAId()) ? session.getUnreadCountA() : session.getUnreadCountB())
+                .lastReadId(userId.equals(session.getUserAId()) ? session.getLastReadIdA() : session.getLastReadIdB())
+                .peerLastReadId(userId.equals(session.getUserAId()) ? session.getLastReadIdB() : session.getLastReadIdA())
                 .build();
     }
 
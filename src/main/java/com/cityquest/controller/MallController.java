@@ -161,6 +161,8 @@ public class MallController {
     public Map<String, Object> getMyOrders(@RequestParam(required = false) Integer status,
                                             @RequestParam(defaultValue = "1") Integer page,
                                             @RequestParam(defaultValue = "10") Integer pageSize,
+                                            @RequestParam(required = false) String cursor,
+                                            @RequestParam(defaultValue = "false") boolean withTotal,
                                             HttpServletRequest request) {
         Map<String, Object> response = new HashMap<>();
         try {
@@ -171,7 +173,10 @@ public class MallController {
                 return response;
             }
 
-            Map<String, Object> result = orderService.getOrderList(userId, status, null, page, pageSize);
+            // 传入 cursor 参数（首页可为空字符串）时使用游标分页，否则按页码分页
+            Map<String, Object> result = cursor != null
+                    ? orderService.getOrderListByCursor(userId, status, null, cursor, pageSize, withTotal)
+                    : orderService.getOrderList(userId, status, null, page, pageSize);
             response.put("success", true);
             response.putAll(result);
         } catch (Exception e) {
@@ -316,6 +316,7 @@ public class SocialController {
             @RequestParam(defaultValue = "1") Integer page,
             @RequestParam(defaultValue = "10") Integer pageSize,
             @RequestParam(required = false) String type,
+            @RequestParam(required = false) String cursor,
             HttpServletRequest request) {
         Map<String, Object> response = new HashMap<>();
         try {
@@ -326,7 +327,10 @@ public class SocialController {
                 return response;
             }
 
-            Map<String, Object> result = socialService.getFeedList(userId, page, pageSize, type);
+            // 传入 cursor 参数（首页可为空字符串）时使用游标分页，否则按页码分页
+            Map<String, Object> result = cursor != null
+                    ? socialService.getFeedListByCursor(userId, cursor, pageSize, type)
+                    : socialService.getFeedList(userId, page, pageSize, type);
             response.put("success", true);
             response.putAll(result);
         } catch (Exception e) {
@@ -1,5 +1,6 @@
 package com.cityquest.dto.chat;
 
+import com.cityquest.entity.ChatMessage;
 import lombok.Builder;
 import lombok.Data;
 
@@ -17,5 +18,19 @@ public class ChatMessageDTO {
     private Integer status;
     private String extra;
     private Date createTime;
+
+    public static ChatMessageDTO from(ChatMessage message) {
+        return ChatMessageDTO.builder()
+                .id(message.getId())
+                .sessionId(message.getSessionId())
+                .senderId(message.getSenderId())
+                .receiverId(message.getReceiverId())
+                .contentType(message.getContentType())
+                .content(message.getContent())
+                .status(message.getStatus())
+                .extra(message.getExtra())
+                .createTime(message.getCreateTime())
+                .build();
+    }
 }
 
@@ -7,11 +7,13 @@ import lombok.Data;
  */
 @Data
 public class ChatMessagePayload {
-    private String type;          // chat、read、ping 等
+    private String type;          // chat、read、sync、ping 等
     private Long sessionId;       // 会话ID（可选）
     private Long receiverId;      // 接收方ID
     private Integer contentType;  // 消息类型
     private String content;       // 消息内容
     private String extra;         // 附加信息（JSON）
+    private Long lastReadMessageId; // 已读到的消息ID（read 时可选，为空表示全部已读）
+    private Long afterMessageId;  // sync 续传的起始消息ID（不含）
 }
 
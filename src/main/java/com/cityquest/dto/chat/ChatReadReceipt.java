@@ -0,0 +1,16 @@
+package com.cityquest.dto.chat;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * 已读回执：readerId 在会话中已读到 lastReadMessageId（含）为止的消息
+ */
+@Data
+@Builder
+public class ChatReadReceipt {
+    private Long sessionId;
+    private Long readerId;
+    private Long peerId;
+    private Long lastReadMessageId;
+}
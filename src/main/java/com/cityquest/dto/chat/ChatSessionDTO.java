@@ -16,7 +16,16 @@ public class ChatSessionDTO {
     private Date lastMessageTime;
     private Integer unreadCountA;
     private Integer unreadCountB;
+    private Long lastReadIdA;
+    private Long lastReadIdB;
     private Date createTime;
     private Date updateTime;
+    // 以下字段相对当前用户
+    private Long peerId;
+    private String peerNickname;
+    private String peerAvatar;
+    private Integer unreadCount;
+    private Long lastReadId;
+    private Long peerLastReadId;
 }
 
@@ -3,11 +3,19 @@ package com.cityquest.dto.chat;
 import lombok.Builder;
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 @Builder
 public class ChatWebSocketResponse {
-    private String type;              // chat, chat_ack, read_ack, error 等
+    private String type;              // chat, chat_ack, read_ack, sync_digest, sync_batch, sync_done, error 等
     private ChatMessageDTO message;   // 消息内容
     private String error;             // 错误信息
+    private Long lastReadMessageId;   // read_ack 的已读水位
+    private List<ChatSessionDTO> sessions;  // sync_digest 的各会话未读摘要
+    private Long sessionId;           // sync_batch 所属会话
+    private List<ChatMessageDTO> messages;  // sync_batch 的消息（按时间正序）
+    private Long cursor;              // sync_batch 本批最后一条消息ID，续传时作为 afterMessageId
+    private Boolean hasMore;          // sync_batch 之后是否还有消息
 }
 
@@ -0,0 +1,42 @@
+package com.cityquest.dto.task;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * 异步任务导入作业
+ */
+@Data
+@NoArgsConstructor
+public class TaskImportJob {
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    private String jobId;
+    private String fileName;
+    private Long createBy;
+    /**
+     * 作业状态：PENDING 排队中、RUNNING 导入中、COMPLETED 已完成、FAILED 失败
+     */
+    private volatile String status;
+    /**
+     * 作业失败时的原因
+     */
+    private volatile String message;
+    private Date createTime;
+    private volatile Date startTime;
+    private volatile Date finishTime;
+    /**
+     * 导入进度与结果
+     */
+    private final TaskImportResult result = new TaskImportResult();
+
+    public boolean isFinished() {
+        return STATUS_COMPLETED.equals(status) || STATUS_FAILED.equals(status);
+    }
+}
@@ -1,6 +1,6 @@
 package com.cityquest.dto.task;
 
-import com.cityquest.entity.TaskInfo;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -11,40 +11,54 @@ import java.util.List;
 
 /**
  * 批量导入任务结果
+ * 异步导入时由导入线程写入、查询线程读取，计数字段使用volatile保证可见性；
+ * 失败明细只保留前 maxFailures 条，failedCount 为全部失败行数
  */
 @Data
 @NoArgsConstructor
 public class TaskImportResult {
 
     private String fileName;
-    private int totalRows;
-    private int successCount;
-    private int failedCount;
-    private final List<FailureDetail> failures = new ArrayList<>();
-    private final List<TaskInfo> importedTasks = new ArrayList<>();
+    private volatile int totalRows;
+    private volatile int successCount;
+    private volatile int failedCount;
+    /**
+     * 已写入数据库的批次数
+     */
+    private volatile int batchCount;
+    private final List<FailureDetail> failures = Collections.synchronizedList(new ArrayList<>());
+    /**
+     * 最多保留的失败明细条数
+     */
+    @JsonIgnore
+    private volatile int maxFailures = 1000;
 
     public void increaseTotalRows() {
         this.totalRows++;
     }
 
-    public void addSuccess(TaskInfo taskInfo) {
-        this.successCount++;
-        if (taskInfo != null) {
-            this.importedTasks.add(taskInfo);
-        }
+    /**
+     * 写入成功时只累加计数，不保留任务对象，避免大文件导入占用内存
+     */
+    public void addSuccessCount(int count) {
+        this.successCount += count;
+    }
+
+    public void increaseBatchCount() {
+        this.batchCount++;
     }
 
     public void addFailure(int rowIndex, String reason) {
         this.failedCount++;
-        this.failures.add(new FailureDetail(rowIndex, reason));
+        if (failures.size() < maxFailures) {
+            failures.add(new FailureDetail(rowIndex, reason));
+        }
     }
 
     public List<FailureDetail> getFailures() {
-        return Collections.unmodifiableList(failures);
-    }
-
-    public List<TaskInfo> getImportedTasks() {
-        return Collections.unmodifiableList(importedTasks);
+        synchronized (failures) {
+            return Collections.unmodifiableList(new ArrayList<>(failures));
+        }
     }
 
     @Data
@@ -0,0 +1,19 @@
+package com.cityquest.dto.user;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 已验证的登录身份（token 校验通过后的结果）
+ */
+@Data
+@AllArgsConstructor
+public class AuthPrincipal {
+
+    private Long userId;
+    private String role;
+    /**
+     * token 过期时间（毫秒时间戳）
+     */
+    private long expireAt;
+}
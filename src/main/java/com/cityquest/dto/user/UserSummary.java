@@ -0,0 +1,41 @@
+package com.cityquest.dto.user;
+
+import com.cityquest.entity.UserInfo;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 用户摘要信息（展示与鉴权常用字段，不含密码、积分等）
+ */
+@Data
+@NoArgsConstructor
+public class UserSummary {
+
+    private Long id;
+    private String username;
+    private String nickname;
+    private String avatar;
+    private String role;
+    private Integer status;
+
+    public static UserSummary from(UserInfo userInfo) {
+        if (userInfo == null) {
+            return null;
+        }
+        UserSummary summary = new UserSummary();
+        summary.setId(userInfo.getId());
+        summary.setUsername(userInfo.getUsername());
+        summary.setNickname(userInfo.getNickname());
+        summary.setAvatar(userInfo.getAvatar());
+        summary.setRole(userInfo.getRole());
+        summary.setStatus(userInfo.getStatus());
+        return summary;
+    }
+
+    /**
+     * 展示名：优先昵称，其次用户名
+     */
+    public String getDisplayName() {
+        return nickname != null ? nickname : username;
+    }
+}
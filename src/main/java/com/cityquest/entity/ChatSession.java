@@ -17,6 +17,8 @@ public class ChatSession {
     private Date lastMessageTime;
     private Integer unreadCountA;
     private Integer unreadCountB;
+    private Long lastReadIdA;
+    private Long lastReadIdB;
     private Date createTime;
     private Date updateTime;
 }
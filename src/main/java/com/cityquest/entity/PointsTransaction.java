@@ -0,0 +1,24 @@
+package com.cityquest.entity;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 积分流水实体
+ */
+@Data
+public class PointsTransaction {
+    public static final String TYPE_TASK_REWARD = "task_reward";
+    public static final String TYPE_EXCHANGE = "exchange";
+    public static final String TYPE_EXCHANGE_REFUND = "exchange_refund";
+    public static final String TYPE_ADMIN_ADJUST = "admin_adjust";
+
+    private Long id;
+    private Long userId;
+    private Integer amount;     // 正数为增加，负数为扣减
+    private String type;
+    private Long bizId;         // 关联业务ID
+    private String remark;
+    private Date createTime;
+}
@@ -4,7 +4,7 @@ import com.cityquest.entity.ChatMessage;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
-import java.util.Date;
+import java.util.Collection;
 import java.util.List;
 
 @Mapper
@@ -12,18 +12,40 @@ public interface ChatMessageMapper {
 
     int insert(ChatMessage message);
 
+    /**
+     * 批量插入消息
+     */
+    int insertBatch(@Param("messages") List<ChatMessage> messages);
+
+    /**
+     * 查询给定ID中已存在的消息ID
+     */
+    List<Long> selectExistingIds(@Param("ids") Collection<Long> ids);
+
     List<ChatMessage> selectBySessionId(@Param("sessionId") Long sessionId,
                                         @Param("offset") Integer offset,
                                         @Param("limit") Integer limit);
 
-    ChatMessage selectLastMessage(@Param("sessionId") Long sessionId);
-
-    List<ChatMessage> selectUnreadByReceiver(@Param("receiverId") Long receiverId,
-                                             @Param("afterTime") Date afterTime);
-
-    List<ChatMessage> selectUnreadBySessionAndReceiver(@Param("sessionId") Long sessionId,
-                                                       @Param("receiverId") Long receiverId);
-
-    int updateStatusBatch(@Param("ids") List<Long> ids, @Param("status") Integer status);
+    /**
+     * 按消息ID向前翻页：取ID小于 beforeId 的消息（beforeId 为空时取最新），按ID倒序
+     */
+    List<ChatMessage> selectBySessionBefore(@Param("sessionId") Long sessionId,
+                                            @Param("beforeId") Long beforeId,
+                                            @Param("limit") Integer limit);
+
+    /**
+     * 统计接收方在 (afterId, upToId] 范围内收到的消息数
+     */
+    int countReceivedBetween(@Param("sessionId") Long sessionId,
+                             @Param("receiverId") Long receiverId,
+                             @Param("afterId") Long afterId,
+                             @Param("upToId") Long upToId);
+
+    /**
+     * 按消息ID向后同步：取ID大于 afterId 的消息，按ID正序
+     */
+    List<ChatMessage> selectBySessionAfter(@Param("sessionId") Long sessionId,
+                                           @Param("afterId") Long afterId,
+                                           @Param("limit") Integer limit);
 }
 
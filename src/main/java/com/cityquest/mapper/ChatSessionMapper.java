@@ -4,6 +4,7 @@ import com.cityquest.entity.ChatSession;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Date;
 import java.util.List;
 
 @Mapper
@@ -19,8 +20,18 @@ public interface ChatSessionMapper {
 
     int update(ChatSession session);
 
-    int updateUnreadCount(@Param("sessionId") Long sessionId, @Param("userId") Long userId, @Param("unreadCount") Integer unreadCount);
-
-    int incrementUnreadCount(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+    /**
+     * 将用户在会话中的已读水位推进到 lastReadId，并按新水位重新计算其未读数
+     */
+    int markReadUpTo(@Param("sessionId") Long sessionId, @Param("userId") Long userId, @Param("lastReadId") Long lastReadId);
+
+    /**
+     * 合并应用一批新消息：仅当消息更新时覆盖最近消息，并按已落库的消息重新计算双方未读数；
+     * 未读数为已读水位及本人最近一条发出消息之后收到的消息数，与消息落库顺序无关
+     */
+    int applyMessageDelta(@Param("sessionId") Long sessionId,
+                          @Param("lastMessageId") Long lastMessageId,
+                          @Param("lastMessagePreview") String lastMessagePreview,
+                          @Param("lastMessageTime") Date lastMessageTime);
 }
 
@@ -4,6 +4,7 @@ import com.cityquest.entity.ExchangeOrderItem;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -16,6 +17,11 @@ public interface ExchangeOrderItemMapper {
      */
     List<ExchangeOrderItem> selectByOrderId(@Param("orderId") Long orderId);
 
+    /**
+     * 根据订单ID批量查询订单明细
+     */
+    List<ExchangeOrderItem> selectByOrderIds(@Param("orderIds") Collection<Long> orderIds);
+
     /**
      * 新增订单明细
      */
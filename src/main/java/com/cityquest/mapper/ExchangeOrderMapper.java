@@ -4,6 +4,7 @@ import com.cityquest.entity.ExchangeOrder;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -30,6 +31,16 @@ public interface ExchangeOrderMapper {
                                    @Param("offset") Integer offset,
                                    @Param("pageSize") Integer pageSize);
 
+    /**
+     * 按 (create_time, id) 倒序游标查询订单列表，cursorTime 为空时从最新开始
+     */
+    List<ExchangeOrder> selectListAfterCursor(@Param("userId") Long userId,
+                                              @Param("status") Integer status,
+                                              @Param("keyword") String keyword,
+                                              @Param("cursorTime") Date cursorTime,
+                                              @Param("cursorId") Long cursorId,
+                                              @Param("limit") Integer limit);
+
     /**
      * 查询订单总数
      */
@@ -47,6 +58,14 @@ public interface ExchangeOrderMapper {
      */
     int update(ExchangeOrder order);
 
+    /**
+     * 订单处于指定状态时才更新状态，返回0表示状态已变化
+     */
+    int updateStatusFrom(@Param("id") Long id,
+                         @Param("fromStatus") Integer fromStatus,
+                         @Param("toStatus") Integer toStatus,
+                         @Param("updateTime") Date updateTime);
+
     /**
      * 删除订单
      */
@@ -4,6 +4,9 @@ import com.cityquest.entity.FeedLikeInfo;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * 动态点赞Mapper接口
  */
@@ -24,6 +27,11 @@ public interface FeedLikeMapper {
      */
     int checkLike(@Param("feedId") Integer feedId, @Param("userId") Long userId);
 
+    /**
+     * 在给定动态中查询用户已点赞的动态ID
+     */
+    List<Integer> selectLikedFeedIds(@Param("userId") Long userId, @Param("feedIds") Collection<Integer> feedIds);
+
     /**
      * 根据动态ID删除所有点赞记录
      */
@@ -4,6 +4,8 @@ import com.cityquest.entity.UserFeedInfo;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -36,6 +38,45 @@ public interface FeedMapper {
      */
     List<UserFeedInfo> selectFriendFeedList(@Param("userId") Long userId, @Param("page") Integer page, @Param("pageSize") Integer pageSize);
 
+    /**
+     * 根据ID批量查询动态
+     */
+    List<UserFeedInfo> selectByIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * 查询好友动态ID（按ID倒序），用于重建时间线收件箱
+     */
+    List<Integer> selectFriendFeedIds(@Param("userId") Long userId, @Param("limit") Integer limit);
+
+    /**
+     * 查询给定用户ID小于 beforeId 的动态ID（按ID倒序），beforeId 为空时从最新开始
+     */
+    List<Integer> selectIdsByUserIds(@Param("userIds") Collection<Long> userIds, @Param("beforeId") Long beforeId,
+                                     @Param("limit") Integer limit);
+
+    /**
+     * 查询好友动态总数
+     */
+    int selectFriendFeedCount(@Param("userId") Long userId);
+
+    /**
+     * 游标分页查询用户的动态列表（按 create_time、id 倒序）
+     */
+    List<UserFeedInfo> selectByUserIdAfterCursor(@Param("userId") Long userId, @Param("cursorTime") Date cursorTime,
+                                                 @Param("cursorId") Long cursorId, @Param("limit") Integer limit);
+
+    /**
+     * 游标分页查询公开动态列表
+     */
+    List<UserFeedInfo> selectPublicFeedListAfterCursor(@Param("cursorTime") Date cursorTime,
+                                                       @Param("cursorId") Long cursorId, @Param("limit") Integer limit);
+
+    /**
+     * 游标分页查询好友动态列表
+     */
+    List<UserFeedInfo> selectFriendFeedListAfterCursor(@Param("userId") Long userId, @Param("cursorTime") Date cursorTime,
+                                                       @Param("cursorId") Long cursorId, @Param("limit") Integer limit);
+
     /**
      * 更新点赞数
      */
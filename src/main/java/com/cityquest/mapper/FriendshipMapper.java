@@ -4,6 +4,7 @@ import com.cityquest.entity.FriendshipInfo;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -45,5 +46,24 @@ public interface FriendshipMapper {
      * 查询粉丝数
      */
     int selectFollowerCount(@Param("followeeId") Long followeeId);
-}
 
+    /**
+     * 查询用户的全部粉丝ID
+     */
+    List<Long> selectFollowerIds(@Param("followeeId") Long followeeId);
+
+    /**
+     * 在给定用户中筛选出已被关注的用户ID
+     */
+    List<Long> selectFolloweeIdsIn(@Param("followerId") Long followerId, @Param("followeeIds") Collection<Long> followeeIds);
+
+    /**
+     * 查询用户关注的用户ID（最多limit条）
+     */
+    List<Long> selectFolloweeIds(@Param("followerId") Long followerId, @Param("limit") Integer limit);
+
+    /**
+     * 批量查询多个用户的关注关系
+     */
+    List<FriendshipInfo> selectByFollowerIds(@Param("followerIds") Collection<Long> followerIds);
+}
@@ -0,0 +1,16 @@
+package com.cityquest.mapper;
+
+import com.cityquest.entity.PointsTransaction;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * 积分流水Mapper接口
+ */
+@Mapper
+public interface PointsTransactionMapper {
+
+    /**
+     * 记录流水，同一用户同一业务已存在时忽略并返回0
+     */
+    int insertIgnore(PointsTransaction transaction);
+}
@@ -1,10 +1,13 @@
 package com.cityquest.mapper;
 
+import com.cityquest.entity.ExchangeOrderItem;
 import com.cityquest.entity.ProductInfo;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 商品Mapper接口
@@ -16,6 +19,11 @@ public interface ProductMapper {
      */
     ProductInfo selectById(@Param("id") Integer id);
 
+    /**
+     * 根据ID批量查询商品
+     */
+    List<ProductInfo> selectByIds(@Param("ids") Collection<Integer> ids);
+
     /**
      * 查询商品列表
      */
@@ -48,13 +56,14 @@ public interface ProductMapper {
     int delete(@Param("id") Integer id);
 
     /**
-     * 更新库存
+     * 批量设置库存（商品ID -> 库存）
      */
-    int updateStock(@Param("id") Integer id, @Param("quantity") Integer quantity);
+    int batchSetStock(@Param("stocks") Map<Integer, Integer> stocks);
 
     /**
-     * 查询用户已兑换数量（用于限购检查）
+     * 按商品汇总用户已兑换数量（productId、quantity），没有兑换记录的商品不返回
      */
-    int selectUserExchangeCount(@Param("userId") Long userId, @Param("productId") Integer productId);
+    List<ExchangeOrderItem> selectUserExchangeCounts(@Param("userId") Long userId,
+                                                     @Param("productIds") Collection<Integer> productIds);
 }
 
@@ -41,6 +41,13 @@ public interface RecordMapper {
      */
     int updateAuditStatus(@Param("id") Integer id, @Param("status") Integer status, @Param("remark") String remark, @Param("adminId") Long adminId);
 
+    /**
+     * 审核状态跨越"已通过"时更新：approved 为true时只更新当前已通过的记录，为false时只更新当前未通过的记录
+     * 返回1表示完成了 未通过->通过 或 通过->未通过 的转换
+     */
+    int updateAuditStatusFrom(@Param("id") Integer id, @Param("status") Integer status, @Param("remark") String remark,
+                              @Param("adminId") Long adminId, @Param("approved") boolean approved);
+
     /**
      * 查询记录总数
      */
@@ -51,6 +58,11 @@ public interface RecordMapper {
      */
     int checkUserTaskCompletion(@Param("userId") Long userId, @Param("taskId") Integer taskId);
 
+    /**
+     * 查询用户在给定任务中已完成的任务ID
+     */
+    List<Integer> selectCompletedTaskIds(@Param("userId") Long userId, @Param("taskIds") List<Integer> taskIds);
+
     /**
      * 删除记录（根据ID）
      */
@@ -4,7 +4,9 @@ import com.cityquest.entity.TaskInfo;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 任务Mapper接口
@@ -31,6 +33,11 @@ public interface TaskMapper {
      */
     int insert(TaskInfo taskInfo);
 
+    /**
+     * 批量新增任务（多行INSERT，回填自增ID）
+     */
+    int insertBatch(@Param("tasks") List<TaskInfo> tasks);
+
     /**
      * 更新任务
      */
@@ -47,7 +54,22 @@ public interface TaskMapper {
     int updateCompletionCount(@Param("id") Integer id);
 
     /**
-     * 根据地理位置查询附近任务
+     * 批量累加任务完成数（任务ID -> 增量）
+     */
+    int batchAddCompletionCount(@Param("deltas") Map<Integer, Integer> deltas);
+
+    /**
+     * 按已通过的打卡记录校正任务完成数，返回被修正的任务数
+     */
+    int reconcileCompletionCount(@Param("excludeIds") Collection<Integer> excludeIds);
+
+    /**
+     * 根据ID列表批量查询任务
+     */
+    List<TaskInfo> selectByIds(@Param("ids") List<Integer> ids);
+
+    /**
+     * 查询所有进行中且有经纬度的任务位置（用于构建地理索引）
      */
-    List<TaskInfo> selectNearbyTasks(@Param("longitude") Double longitude, @Param("latitude") Double latitude, @Param("radius") Double radius);
+    List<TaskInfo> selectActiveLocations();
 }
\ No newline at end of file
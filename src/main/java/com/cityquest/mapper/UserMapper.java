@@ -4,6 +4,7 @@ import com.cityquest.entity.UserInfo;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -21,6 +22,11 @@ public interface UserMapper {
      */
     UserInfo selectById(@Param("id") Long id);
 
+    /**
+     * 根据ID批量查询用户
+     */
+    List<UserInfo> selectByIds(@Param("ids") Collection<Long> ids);
+
     /**
      * 新增用户
      */
@@ -36,6 +42,11 @@ public interface UserMapper {
      */
     int updatePoints(@Param("userId") Long userId, @Param("points") Integer points);
 
+    /**
+     * 余额足够时扣减积分，余额不足返回0
+     */
+    int debitPoints(@Param("userId") Long userId, @Param("amount") Integer amount);
+
     /**
      * 查询积分排行榜
      */
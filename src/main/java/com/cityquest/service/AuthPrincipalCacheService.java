@@ -0,0 +1,42 @@
+package com.cityquest.service;
+
+import com.cityquest.dto.user.AuthPrincipal;
+
+/**
+ * 登录身份缓存服务
+ * 按 token 摘要缓存已通过全部校验的身份，有效期不超过 token 本身；
+ * 强制下线、重新登录、退出等事件通过 Redis 广播到所有节点使缓存失效
+ */
+public interface AuthPrincipalCacheService {
+
+    /**
+     * 查询 token 对应的已验证身份
+     *
+     * @param token JWT
+     * @return 已验证身份，未缓存或已过期时返回null
+     */
+    AuthPrincipal get(String token);
+
+    /**
+     * 获取当前失效代数，校验前读取，写入缓存时用于丢弃校验期间该用户已失效的结果
+     *
+     * @param userId 用户ID
+     */
+    long currentGeneration(Long userId);
+
+    /**
+     * 缓存已通过全部校验的身份
+     *
+     * @param token      JWT
+     * @param principal  已验证身份
+     * @param generation 校验开始前读取的失效代数
+     */
+    void put(String token, AuthPrincipal principal, long generation);
+
+    /**
+     * 使用户的全部已缓存身份失效，并广播到其他节点
+     *
+     * @param userId 用户ID
+     */
+    void invalidateUser(Long userId);
+}
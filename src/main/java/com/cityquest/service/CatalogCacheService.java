@@ -0,0 +1,50 @@
+package com.cityquest.service;
+
+import com.cityquest.entity.ProductCategory;
+import com.cityquest.entity.ProductInfo;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 商城目录缓存服务（分类列表、商品分页、商品详情）
+ * 缓存条目带分类版本和商品版本，写操作递增版本后旧条目自动失效；库存不进入缓存，读取时叠加实时库存
+ */
+public interface CatalogCacheService {
+
+    /**
+     * 查询分类列表
+     *
+     * @param status 分类状态，为空时查询全部
+     */
+    List<ProductCategory> getCategories(Integer status);
+
+    /**
+     * 分页查询商品
+     *
+     * @return list、items、total
+     */
+    Map<String, Object> getProductPage(Integer categoryId, Integer status, String keyword, Integer page, Integer pageSize);
+
+    /**
+     * 查询商品详情
+     *
+     * @return 商品，不存在时返回null
+     */
+    ProductInfo getProduct(Integer id);
+
+    /**
+     * 分类变更后递增分类版本（当前存在事务时在提交后生效，并通知其他节点）
+     */
+    void onCategoryChanged();
+
+    /**
+     * 商品变更后递增商品版本（当前存在事务时在提交后生效，并通知其他节点）
+     */
+    void onProductChanged();
+
+    /**
+     * 缓存统计：命中数、未命中数、命中率、当前条目数、当前版本
+     */
+    Map<String, Object> getStats();
+}
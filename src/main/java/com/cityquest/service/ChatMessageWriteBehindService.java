@@ -0,0 +1,26 @@
+package com.cityquest.service;
+
+import com.cityquest.entity.ChatMessage;
+
+/**
+ * 聊天消息异步持久化服务
+ * 消息先写入 Redis Stream 即可确认发送，后台按会话分片批量落库并合并会话/未读数更新
+ */
+public interface ChatMessageWriteBehindService {
+
+    /**
+     * 将消息写入持久化队列，写入失败时抛出异常
+     *
+     * @param message 消息（ID、会话ID已确定）
+     * @param preview 会话最近消息预览
+     */
+    void enqueue(ChatMessage message, String preview);
+
+    /**
+     * 同步落库单条消息（队列不可用时使用）
+     *
+     * @param message 消息
+     * @param preview 会话最近消息预览
+     */
+    void persist(ChatMessage message, String preview);
+}
@@ -1,9 +1,11 @@
 package com.cityquest.service;
 
+import com.cityquest.dto.chat.ChatReadReceipt;
 import com.cityquest.entity.ChatMessage;
 import com.cityquest.entity.ChatSession;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * 聊天服务接口
@@ -17,11 +19,12 @@ public interface ChatService {
 
     /**
      * 发送消息（互粉校验、持久化、未读数更新）。
+     * 开启异步持久化时写入队列即返回，消息与会话更新由后台批量落库。
      */
     ChatMessage sendMessage(Long senderId, Long receiverId, Integer contentType, String content, String extra);
 
     /**
-     * 获取用户的会话列表。
+     * 获取用户的会话列表（按最近消息时间倒序，活跃用户直接读取 Redis 中的最近会话）。
      */
     List<ChatSession> listUserSessions(Long userId);
 
@@ -31,9 +34,17 @@ public interface ChatService {
     List<ChatMessage> getSessionMessages(Long sessionId, Long userId, Integer page, Integer pageSize);
 
     /**
-     * 将会话中针对该用户的消息标记为已读。
+     * 按消息ID游标获取会话消息（结果按时间正序）。
+     * 传 afterMessageId 时返回其后的消息，用于断线重连后同步；否则返回 beforeMessageId 之前（为空时为最新）的一页。
+     * 返回 list、hasMore，以及本页最早/最新消息ID oldestId、newestId，分别作为下一次的 beforeMessageId、afterMessageId。
      */
-    void markSessionMessagesAsRead(Long sessionId, Long userId);
+    Map<String, Object> getSessionMessagesBySeek(Long sessionId, Long userId, Long beforeMessageId,
+                                                 Long afterMessageId, Integer pageSize);
+
+    /**
+     * 将用户在会话中的已读水位推进到 lastReadMessageId（为空表示当前全部消息），返回生效后的水位。
+     */
+    ChatReadReceipt markSessionMessagesAsRead(Long sessionId, Long userId, Long lastReadMessageId);
 
     /**
      * 是否互相关注（供前端或其他服务调用）。
@@ -0,0 +1,41 @@
+package com.cityquest.service;
+
+import com.cityquest.entity.ChatMessage;
+import com.cityquest.entity.ChatSession;
+
+import java.util.List;
+
+/**
+ * 用户最近会话列表服务（Redis 中按最近消息时间排序，发送与已读时增量更新）
+ */
+public interface ChatSessionListService {
+
+    /**
+     * 获取用户最近会话，按最近消息时间倒序；未构建时从数据库加载
+     * 最多返回 chat.session-list.max-sessions 个会话，更早的会话不返回
+     *
+     * @param userId 用户ID
+     * @return 会话列表
+     */
+    List<ChatSession> getRecentSessions(Long userId);
+
+    /**
+     * 新建会话后加入双方列表
+     */
+    void onSessionCreated(ChatSession session);
+
+    /**
+     * 发送消息后更新会话最近消息、未读数及排序
+     *
+     * @param message 消息
+     * @param preview 最近消息预览
+     */
+    void onMessage(ChatMessage message, String preview);
+
+    /**
+     * 用户已读水位推进后更新其水位：水位覆盖最近消息时清零未读数，否则按本次读过的消息数扣减
+     *
+     * @param readCount 水位推进范围内该用户收到的消息数
+     */
+    void onRead(Long sessionId, Long userId, Long lastReadId, int readCount);
+}
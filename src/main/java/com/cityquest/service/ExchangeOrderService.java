@@ -18,6 +18,14 @@ public interface ExchangeOrderService {
      */
     Map<String, Object> getOrderList(Long userId, Integer status, String keyword, Integer page, Integer pageSize);
 
+    /**
+     * 按 (create_time, id) 游标获取订单列表
+     *
+     * @param cursor    上一页返回的 nextCursor，首页为空
+     * @param withTotal 是否返回总数（全部订单的总数来自短期缓存，可能略有滞后）
+     */
+    Map<String, Object> getOrderListByCursor(Long userId, Integer status, String keyword, String cursor, Integer pageSize, boolean withTotal);
+
     /**
      * 根据ID获取订单详情
      */
@@ -0,0 +1,36 @@
+package com.cityquest.service;
+
+import com.cityquest.entity.UserFeedInfo;
+
+import java.util.List;
+
+/**
+ * 好友动态时间线服务
+ * 发布时将动态ID推送到粉丝的收件箱（写扩散），粉丝数超过阈值的用户改为读取时合并（读扩散）
+ */
+public interface FeedTimelineService {
+
+    /**
+     * 动态发布后推送到粉丝收件箱（当前存在事务时在提交后执行）
+     *
+     * @param feed 新发布的动态
+     */
+    void onFeedPublished(UserFeedInfo feed);
+
+    /**
+     * 关注关系变化后使用户的收件箱失效，下次读取时重建
+     *
+     * @param followerId 关注者ID
+     */
+    void onFollowChanged(Long followerId);
+
+    /**
+     * 读取好友动态ID（按ID倒序）
+     *
+     * @param userId   用户ID
+     * @param beforeId 上一页最后一条动态ID，为空时从最新开始
+     * @param limit    条数
+     * @return 动态ID；收件箱不可用或已翻过收件箱深度时返回null，由调用方回退到数据库查询
+     */
+    List<Integer> getFriendFeedIds(Long userId, Long beforeId, int limit);
+}
@@ -0,0 +1,36 @@
+package com.cityquest.service;
+
+import java.util.Map;
+
+/**
+ * 关注关系图服务（内存中按用户缓存关注集合）
+ */
+public interface FollowGraphService {
+
+    /**
+     * 是否已关注
+     *
+     * @param followerId 关注者ID
+     * @param followeeId 被关注者ID
+     */
+    boolean isFollowing(Long followerId, Long followeeId);
+
+    /**
+     * 是否互相关注
+     */
+    boolean isMutualFollow(Long userId, Long targetUserId);
+
+    /**
+     * 关注关系变更后更新关系图（当前存在事务时在提交后生效），并通知其他节点
+     *
+     * @param followerId 关注者ID
+     * @param followeeId 被关注者ID
+     * @param following  变更后是否处于关注状态
+     */
+    void onFollowChanged(Long followerId, Long followeeId, boolean following);
+
+    /**
+     * 缓存统计
+     */
+    Map<String, Object> getStats();
+}
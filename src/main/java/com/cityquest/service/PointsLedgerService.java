@@ -0,0 +1,32 @@
+package com.cityquest.service;
+
+/**
+ * 积分账本服务
+ * 每次积分变动先写入只追加的积分流水，再更新用户余额；同一用户同一业务（type + bizId）只记账一次
+ */
+public interface PointsLedgerService {
+
+    /**
+     * 增加积分
+     *
+     * @param userId 用户ID
+     * @param amount 增加的积分（大于0）
+     * @param type   流水类型
+     * @param bizId  关联业务ID，为空时不做重复校验
+     * @param remark 备注
+     * @return 是否记账，该业务已记过账时返回false
+     */
+    boolean credit(Long userId, int amount, String type, Long bizId, String remark);
+
+    /**
+     * 扣减积分，余额不足时抛出异常
+     *
+     * @param userId 用户ID
+     * @param amount 扣减的积分（大于0）
+     * @param type   流水类型
+     * @param bizId  关联业务ID，为空时不做重复校验
+     * @param remark 备注
+     * @return 是否记账，该业务已记过账时返回false
+     */
+    boolean debit(Long userId, int amount, String type, Long bizId, String remark);
+}
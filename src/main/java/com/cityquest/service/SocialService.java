@@ -41,6 +41,11 @@ public interface SocialService {
      */
     Map<String, Object> getFeedList(Long userId, Integer page, Integer pageSize, String type);
 
+    /**
+     * 游标分页获取动态列表，cursor 为空时从最新开始，返回 nextCursor 用于下一页
+     */
+    Map<String, Object> getFeedListByCursor(Long userId, String cursor, Integer pageSize, String type);
+
     /**
      * 点赞动态
      */
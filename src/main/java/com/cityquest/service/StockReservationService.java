@@ -0,0 +1,55 @@
+package com.cityquest.service;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 商品库存预扣服务
+ * 兑换时在 Redis 中按商品原子扣减库存，Redis 中的计数器即为可兑换库存，由任一节点定时批量写回 product_info.stock
+ */
+public interface StockReservationService {
+
+    /**
+     * 一次预扣多个商品的库存，全部足够时才扣减，当前事务回滚时自动归还
+     *
+     * @param quantities 商品ID -> 数量
+     * @return 库存不足的商品ID，全部预扣成功返回null
+     * @throws RuntimeException 库存计数器不可用
+     */
+    Integer reserve(Map<Integer, Integer> quantities);
+
+    /**
+     * 归还多个商品的库存（当前存在事务时在提交后生效）
+     *
+     * @param quantities 商品ID -> 数量
+     */
+    void release(Map<Integer, Integer> quantities);
+
+    /**
+     * 读取商品的实时可兑换库存，尚未加载计数器的商品不在结果中
+     *
+     * @param productIds 商品ID
+     * @return 商品ID -> 库存（Redis 不可用时为空）
+     */
+    Map<Integer, Integer> getStock(Collection<Integer> productIds);
+
+    /**
+     * 管理员设置库存后以新库存覆盖计数器（当前存在事务时在提交后生效）
+     *
+     * @param productId 商品ID
+     * @param stock     新库存
+     */
+    void setStock(Integer productId, int stock);
+
+    /**
+     * 丢弃商品的库存计数器（删除商品后调用）
+     *
+     * @param productId 商品ID
+     */
+    void reset(Integer productId);
+
+    /**
+     * 将有变化的计数器当前值批量写回数据库
+     */
+    void flush();
+}
@@ -0,0 +1,26 @@
+package com.cityquest.service;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * 用户任务完成状态缓存服务（按用户缓存已完成任务位图）
+ */
+public interface TaskCompletionCacheService {
+
+    /**
+     * 查询用户在给定任务中已完成的任务ID，未命中缓存的部分合并为一次查询
+     *
+     * @param userId  用户ID
+     * @param taskIds 待检查的任务ID
+     * @return 已完成的任务ID
+     */
+    Set<Integer> getCompletedTaskIds(Long userId, Collection<Integer> taskIds);
+
+    /**
+     * 使用户的完成状态缓存失效（当前存在事务时在提交后生效）
+     *
+     * @param userId 用户ID
+     */
+    void evict(Long userId);
+}
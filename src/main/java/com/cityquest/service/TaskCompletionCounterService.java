@@ -0,0 +1,34 @@
+package com.cityquest.service;
+
+/**
+ * 任务完成数计数服务
+ * 审核通过时在内存中累加，定时批量写回 task_info.completion_count，并定期按打卡记录校正偏差
+ */
+public interface TaskCompletionCounterService {
+
+    /**
+     * 任务完成数加一（当前存在事务时在提交后生效）
+     *
+     * @param taskId 任务ID
+     */
+    void increment(Integer taskId);
+
+    /**
+     * 任务完成数减一（当前存在事务时在提交后生效）
+     *
+     * @param taskId 任务ID
+     */
+    void decrement(Integer taskId);
+
+    /**
+     * 将内存中累积的增量批量写回数据库
+     */
+    void flush();
+
+    /**
+     * 按已通过的打卡记录校正完成数
+     *
+     * @return 被修正的任务数
+     */
+    int reconcile();
+}
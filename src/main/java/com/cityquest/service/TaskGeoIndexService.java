@@ -0,0 +1,41 @@
+package com.cityquest.service;
+
+import com.cityquest.entity.TaskInfo;
+
+import java.util.List;
+
+/**
+ * 任务地理位置索引服务（进程内网格索引，仅收录进行中的任务）
+ */
+public interface TaskGeoIndexService {
+
+    /**
+     * 从数据库全量重建索引
+     */
+    void rebuild();
+
+    /**
+     * 新增或更新任务位置；任务非进行中或缺少经纬度时从索引中移除
+     *
+     * @param taskInfo 任务（需包含完整的状态与经纬度）
+     */
+    void upsert(TaskInfo taskInfo);
+
+    /**
+     * 从索引中移除任务
+     *
+     * @param taskId 任务ID
+     */
+    void remove(Integer taskId);
+
+    /**
+     * 查询半径范围内最近的任务
+     *
+     * @param longitude 中心点经度
+     * @param latitude  中心点纬度
+     * @param radiusKm  搜索半径（公里）
+     * @param limit     最多返回条数
+     * @return 按距离由近到远排序的任务ID
+     */
+    List<Integer> findNearby(double longitude, double latitude, double radiusKm, int limit);
+}
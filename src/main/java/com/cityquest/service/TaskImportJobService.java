@@ -0,0 +1,29 @@
+package com.cityquest.service;
+
+import com.cityquest.dto.task.TaskImportJob;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+
+/**
+ * 异步任务导入作业服务
+ */
+public interface TaskImportJobService {
+
+    /**
+     * 提交导入作业：上传文件先落盘，随后在后台线程池中解析写入
+     *
+     * @param file     上传文件
+     * @param createBy 创建人ID
+     * @return 导入作业（含作业ID）
+     */
+    TaskImportJob submit(MultipartFile file, Long createBy) throws IOException;
+
+    /**
+     * 查询导入作业，作业不存在或已过期时返回null
+     *
+     * @param jobId 作业ID
+     * @return 导入作业
+     */
+    TaskImportJob getJob(String jobId);
+}
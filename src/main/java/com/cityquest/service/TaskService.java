@@ -55,4 +55,19 @@ public interface TaskService {
      * @return 导入结果
      */
     TaskImportResult importTasks(InputStream inputStream, String filename, Long createBy) throws IOException;
+
+    /**
+     * 批量导入任务，导入过程中持续更新传入的结果对象，供异步导入查询进度
+     *
+     * @param inputStream   上传文件输入流
+     * @param filename      原始文件名
+     * @param createBy      创建人ID
+     * @param result        导入结果（进度）
+     */
+    void importTasks(InputStream inputStream, String filename, Long createBy, TaskImportResult result) throws IOException;
+
+    /**
+     * 判断文件类型是否支持导入（xlsx、xls、csv、txt）
+     */
+    boolean isSupportedImportFile(String filename);
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package com.cityquest.service;
+
+import com.cityquest.dto.user.UserSummary;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 用户摘要缓存服务（按用户ID读穿缓存，有容量上限和过期时间）
+ */
+public interface UserSummaryCacheService {
+
+    /**
+     * 查询用户摘要，未命中时读取数据库
+     *
+     * @param userId 用户ID
+     * @return 用户摘要，用户不存在时返回null
+     */
+    UserSummary get(Long userId);
+
+    /**
+     * 批量查询用户摘要，未命中的部分合并为一次查询
+     *
+     * @param userIds 用户ID
+     * @return 用户ID -> 用户摘要（不存在的用户不在结果中）
+     */
+    Map<Long, UserSummary> getAll(Collection<Long> userIds);
+
+    /**
+     * 使用户摘要缓存失效（当前存在事务时在提交后生效）
+     *
+     * @param userId 用户ID
+     */
+    void evict(Long userId);
+
+    /**
+     * 缓存统计：命中数、未命中数、命中率、当前条目数
+     */
+    Map<String, Object> getStats();
+}
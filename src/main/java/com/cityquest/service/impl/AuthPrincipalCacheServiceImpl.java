@@ -0,0 +1,184 @@
+package com.cityquest.service.impl;
+
+import com.cityquest.dto.user.AuthPrincipal;
+import com.cityquest.service.AuthPrincipalCacheService;
+import com.cityquest.service.UserSummaryCacheService;
+import com.cityquest.util.TransactionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 登录身份缓存服务实现
+ * 按用户维护 token 摘要索引，失效时只处理该用户的 token；
+ * 失效代数为全局递增的时间戳，每个用户记录最近一次失效时的代数，只丢弃该用户在失效前开始的校验结果
+ */
+@Service
+public class AuthPrincipalCacheServiceImpl implements AuthPrincipalCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthPrincipalCacheServiceImpl.class);
+
+    private static final String INVALIDATE_CHANNEL = "auth_invalidate";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private UserSummaryCacheService userSummaryCacheService;
+
+    // 最多缓存的 token 数，已满时不再写入新条目
+    @Value("${jwt.principal-cache.max-size:100000}")
+    private int maxSize;
+
+    // token 摘要 -> 已验证身份
+    private final Map<String, AuthPrincipal> principals = new ConcurrentHashMap<>();
+
+    // 用户ID -> 该用户已缓存的 token 摘要
+    private final Map<Long, Set<String>> userTokens = new ConcurrentHashMap<>();
+
+    // 用户ID -> 最近一次失效时的代数，超过一个清理周期的记录会被清除（校验耗时远小于清理间隔）
+    private final Map<Long, Long> invalidatedAt = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    // 上次清理时的代数
+    private volatile long lastCleanupGeneration;
+
+    @PostConstruct
+    public void init() {
+        MessageListener listener = (message, pattern) -> {
+            try {
+                Long userId = Long.valueOf(new String(message.getBody(), StandardCharsets.UTF_8));
+                invalidateLocal(userId);
+                // 其他节点的资料或状态变更同样需要清除本地用户摘要
+                userSummaryCacheService.evict(userId);
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring malformed auth invalidation message");
+            }
+        };
+        redisMessageListenerContainer.addMessageListener(listener, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    @Override
+    public AuthPrincipal get(String token) {
+        if (token == null) {
+            return null;
+        }
+        String key = digest(token);
+        AuthPrincipal principal = principals.get(key);
+        if (principal == null) {
+            return null;
+        }
+        if (principal.getExpireAt() <= System.currentTimeMillis()) {
+            remove(key, principal);
+            return null;
+        }
+        return principal;
+    }
+
+    @Override
+    public long currentGeneration(Long userId) {
+        return generation.get();
+    }
+
+    @Override
+    public void put(String token, AuthPrincipal principal, long loadGeneration) {
+        if (token == null || principal == null || principal.getUserId() == null) {
+            return;
+        }
+        if (principal.getExpireAt() <= System.currentTimeMillis() || principals.size() >= maxSize) {
+            return;
+        }
+        String key = digest(token);
+        Long userId = principal.getUserId();
+        principals.put(key, principal);
+        userTokens.computeIfAbsent(userId, k -> ConcurrentHashMap.newKeySet()).add(key);
+        // 校验期间该用户发生过失效事件时撤销写入，下次请求重新走完整校验
+        Long invalidated = invalidatedAt.get(userId);
+        if (invalidated != null && invalidated > loadGeneration) {
+            remove(key, principal);
+        }
+    }
+
+    @Override
+    public void invalidateUser(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        invalidateLocal(userId);
+        TransactionUtil.afterCommit(() -> {
+            try {
+                stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, String.valueOf(userId));
+            } catch (Exception e) {
+                logger.warn("Failed to broadcast auth invalidation for user {}", userId, e);
+            }
+        });
+    }
+
+    /**
+     * 定时清理已过期的身份
+     */
+    @Scheduled(fixedDelayString = "${jwt.principal-cache.cleanup-interval:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, AuthPrincipal> entry : principals.entrySet()) {
+            if (entry.getValue().getExpireAt() <= now) {
+                remove(entry.getKey(), entry.getValue());
+            }
+        }
+        long cleanupGeneration = lastCleanupGeneration;
+        invalidatedAt.values().removeIf(invalidated -> invalidated <= cleanupGeneration);
+        lastCleanupGeneration = generation.get();
+    }
+
+    /**
+     * 先记录失效代数再移除，移除之后才写入的校验结果会在 put 中被撤销
+     */
+    private void invalidateLocal(Long userId) {
+        invalidatedAt.put(userId, generation.incrementAndGet());
+        Set<String> keys = userTokens.remove(userId);
+        if (keys != null) {
+            for (String key : keys) {
+                principals.remove(key);
+            }
+        }
+    }
+
+    private void remove(String key, AuthPrincipal principal) {
+        if (principals.remove(key, principal)) {
+            userTokens.computeIfPresent(principal.getUserId(), (k, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] hash = md.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.cityquest.service.impl;
+
+import com.cityquest.entity.ProductCategory;
+import com.cityquest.entity.ProductInfo;
+import com.cityquest.mapper.ProductCategoryMapper;
+import com.cityquest.mapper.ProductMapper;
+import com.cityquest.service.CatalogCacheService;
+import com.cityquest.service.StockReservationService;
+import com.cityquest.util.TransactionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 商城目录缓存服务实现
+ * 条目记录加载时的分类版本和商品版本，任一版本变化即视为失效，加载期间发生的变更不会被旧结果覆盖；
+ * 同一条目并发未命中时只有一个线程查库，其余等待其结果，活动期间的突发流量不会线性放大到数据库
+ */
+@Service
+public class CatalogCacheServiceImpl implements CatalogCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogCacheServiceImpl.class);
+
+    private static final String INVALIDATE_CHANNEL = "catalog_invalidate";
+    private static final String CATEGORY = "category";
+    private static final String PRODUCT = "product";
+
+    @Autowired
+    private ProductMapper productMapper;
+
+    @Autowired
+    private ProductCategoryMapper categoryMapper;
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    // 最多缓存的条目数（分类列表、商品分页、商品详情合计）
+    @Value("${mall.catalog-cache.max-size:5000}")
+    private int maxSize;
+
+    // 条目有效期（毫秒），兜底失效通知丢失的情况
+    @Value("${mall.catalog-cache.ttl:600000}")
+    private long ttlMillis;
+
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "");
+
+    private final AtomicLong categoryVersion = new AtomicLong();
+    private final AtomicLong productVersion = new AtomicLong();
+
+    // 缓存键 -> 条目，按访问顺序淘汰
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxSize;
+        }
+    };
+
+    // 缓存键 -> 正在进行的加载
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        MessageListener listener = (message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            int separator = body.indexOf(':');
+            if (separator < 0 || body.substring(0, separator).equals(nodeId)) {
+                return;
+            }
+            bumpLocal(body.substring(separator + 1));
+        };
+        redisMessageListenerContainer.addMessageListener(listener, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<ProductCategory> getCategories(Integer status) {
+        return (List<ProductCategory>) getOrLoad("categories:" + status, false,
+                () -> Collections.unmodifiableList(categoryMapper.selectAll(status)));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> getProductPage(Integer categoryId, Integer status, String keyword, Integer page, Integer pageSize) {
+        String normalizedKeyword = keyword != null ? keyword.trim() : "";
+        String key = "products:" + categoryId + ":" + status + ":" + page + ":" + pageSize + ":" + normalizedKeyword;
+        ProductPage cached = (ProductPage) getOrLoad(key, true, () -> {
+            int offset = (page - 1) * pageSize;
+            String filter = normalizedKeyword.isEmpty() ? null : normalizedKeyword;
+            List<ProductInfo> list = productMapper.selectList(categoryId, status, filter, offset, pageSize);
+            int total = productMapper.selectCount(categoryId, status, filter);
+            return new ProductPage(Collections.unmodifiableList(list), total);
+        });
+
+        List<ProductInfo> productList = withLiveStock(cached.list);
+        Map<String, Object> result = new HashMap<>();
+        result.put("list", productList);
+        result.put("items", productList);
+        result.put("total", cached.total);
+        return result;
+    }
+
+    @Override
+    public ProductInfo getProduct(Integer id) {
+        if (id == null) {
+            return null;
+        }
+        ProductInfo cached = (ProductInfo) getOrLoad("product:" + id, true, () -> productMapper.selectById(id));
+        if (cached == null) {
+            return null;
+        }
+        return withLiveStock(Collections.singletonList(cached)).get(0);
+    }
+
+    @Override
+    public void onCategoryChanged() {
+        bump(CATEGORY);
+    }
+
+    @Override
+    public void onProductChanged() {
+        bump(PRODUCT);
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total > 0 ? (double) hitCount / total : 0.0);
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxSize", maxSize);
+        stats.put("categoryVersion", categoryVersion.get());
+        stats.put("productVersion", productVersion.get());
+        return stats;
+    }
+
+    /**
+     * @param productScoped 条目是否包含商品数据（分类列表不受商品版本影响）
+     */
+    private Object getOrLoad(String key, boolean productScoped, Supplier<Object> loader) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.isValid(categoryVersion.get(), productVersion.get(), now)) {
+                hits.increment();
+                return entry.value;
+            }
+        }
+        misses.increment();
+
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = loading.putIfAbsent(key, mine);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        try {
+            // 版本先于查询读取，加载期间发生变更时条目一写入即失效
+            long loadCategoryVersion = categoryVersion.get();
+            long loadProductVersion = productScoped ? productVersion.get() : Entry.ANY_VERSION;
+            Object value = loader.get();
+            synchronized (entries) {
+                entries.put(key, new Entry(value, loadCategoryVersion, loadProductVersion,
+                        System.currentTimeMillis() + ttlMillis));
+            }
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, mine);
+        }
+    }
+
+    /**
+     * 复制缓存中的商品并替换为实时库存，缓存条目本身不被修改
+     */
+    private List<ProductInfo> withLiveStock(List<ProductInfo> products) {
+        List<Integer> ids = new ArrayList<>(products.size());
+        for (ProductInfo product : products) {
+            ids.add(product.getId());
+        }
+        Map<Integer, Integer> stock = stockReservationService.getStock(ids);
+        List<ProductInfo> result = new ArrayList<>(products.size());
+        for (ProductInfo product : products) {
+            ProductInfo copy = copyOf(product);
+            Integer live = stock.get(product.getId());
+            if (live != null) {
+                copy.setStock(live);
+            }
+            result.add(copy);
+        }
+        return result;
+    }
+
+    private ProductInfo copyOf(ProductInfo product) {
+        ProductInfo copy = new ProductInfo();
+        copy.setId(product.getId());
+        copy.setCategoryId(product.getCategoryId());
+        copy.setName(product.getName());
+        copy.setDescription(product.getDescription());
+        copy.setImage(product.getImage());
+        copy.setPointsPrice(product.getPointsPrice());
+        copy.setStock(product.getStock());
+        copy.setLimitPerUser(product.getLimitPerUser());
+        copy.setStatus(product.getStatus());
+        copy.setCreateBy(product.getCreateBy());
+        copy.setCreateTime(product.getCreateTime());
+        copy.setUpdateTime(product.getUpdateTime());
+        copy.setCategoryName(product.getCategoryName());
+        return copy;
+    }
+
+    private void bump(String type) {
+        bumpLocal(type);
+        // 提交后再递增一次，覆盖事务期间读到旧数据的加载
+        TransactionUtil.afterCommit(() -> {
+            bumpLocal(type);
+            try {
+                stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, nodeId + ":" + type);
+            } catch (Exception e) {
+                logger.warn("Failed to broadcast catalog {} change", type, e);
+            }
+        });
+    }
+
+    private void bumpLocal(String type) {
+        if (CATEGORY.equals(type)) {
+            categoryVersion.incrementAndGet();
+        } else if (PRODUCT.equals(type)) {
+            productVersion.incrementAndGet();
+        } else {
+            logger.warn("Ignoring malformed catalog invalidation message");
+        }
+    }
+
+    private static class Entry {
+        private static final long ANY_VERSION = -1;
+
+        private final Object value;
+        private final long categoryVersion;
+        private final long productVersion;
+        private final long expireAt;
+
+        Entry(Object value, long categoryVersion, long productVersion, long expireAt) {
+            this.value = value;
+            this.categoryVersion = categoryVersion;
+            this.productVersion = productVersion;
+            this.expireAt = expireAt;
+        }
+
+        boolean isValid(long currentCategoryVersion, long currentProductVersion, long now) {
+            return categoryVersion == currentCategoryVersion
+                    && (productVersion == ANY_VERSION || productVersion == currentProductVersion)
+                    && expireAt >= now;
+        }
+    }
+
+    private static class ProductPage {
+        private final List<ProductInfo> list;
+        private final int total;
+
+        ProductPage(List<ProductInfo> list, int total) {
+            this.list = list;
+            this.total = total;
+        }
+    }
+}
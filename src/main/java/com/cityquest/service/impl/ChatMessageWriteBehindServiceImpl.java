@@ -0,0 +1,403 @@
+package com.cityquest.service.impl;
+
+import com.cityquest.entity.ChatMessage;
+import com.cityquest.mapper.ChatMessageMapper;
+import com.cityquest.mapper.ChatSessionMapper;
+import com.cityquest.service.ChatMessageWriteBehindService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 聊天消息异步持久化服务实现
+ * 按会话ID分片写入 chat_write:{shard}，每个节点每个分片一个消费线程；
+ * 多节点消费同一分片或失败重试时消息可能乱序落库，applyMessageDelta 只在消息更新时覆盖最近消息，
+ * 并按已落库的消息重新计算未读数，结果与落库顺序无关
+ */
+@Service
+public class ChatMessageWriteBehindServiceImpl implements ChatMessageWriteBehindService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatMessageWriteBehindServiceImpl.class);
+
+    private static final String STREAM_KEY_PREFIX = "chat_write:";
+    private static final String CONSUMER_GROUP = "chat_writer";
+    private static final String DEAD_LETTER_KEY = "chat_write_dead";
+    private static final String FIELD_DATA = "data";
+    private static final String FIELD_PREVIEW = "preview";
+
+    @Autowired
+    private ChatMessageMapper chatMessageMapper;
+
+    @Autowired
+    private ChatSessionMapper chatSessionMapper;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // 分片数，同一会话始终落在同一分片
+    @Value("${chat.write-behind.shards:4}")
+    private int shards;
+
+    // 单次批量落库的最大消息数
+    @Value("${chat.write-behind.batch-size:200}")
+    private int batchSize;
+
+    // 无消息时阻塞读取的最长时间（毫秒）
+    @Value("${chat.write-behind.block-timeout:1000}")
+    private long blockTimeoutMillis;
+
+    // 已读取但超过该时长未确认的消息会被重新认领（毫秒）
+    @Value("${chat.write-behind.claim-idle:60000}")
+    private long claimIdleMillis;
+
+    // 投递次数达到该值的消息改为逐条落库，仍失败则移入死信流 chat_write_dead
+    @Value("${chat.write-behind.max-deliveries:5}")
+    private int maxDeliveries;
+
+    private final String consumerName = UUID.randomUUID().toString().replace("-", "");
+
+    private final List<Thread> consumers = new ArrayList<>();
+
+    private TransactionTemplate transactionTemplate;
+
+    private volatile boolean running = true;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int shard = 0; shard < shards; shard++) {
+            String key = streamKey(shard);
+            ensureGroup(key);
+            Thread thread = new Thread(() -> consumeLoop(key), "chat-write-" + shard);
+            thread.setDaemon(true);
+            consumers.add(thread);
+            thread.start();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        for (Thread thread : consumers) {
+            try {
+                thread.join(blockTimeoutMillis + 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void enqueue(ChatMessage message, String preview) {
+        Map<String, String> fields = new HashMap<>();
+        try {
+            fields.put(FIELD_DATA, objectMapper.writeValueAsString(message));
+        } catch (Exception e) {
+            throw new RuntimeException("消息序列化失败", e);
+        }
+        fields.put(FIELD_PREVIEW, preview != null ? preview : "");
+        RecordId recordId = stringRedisTemplate.opsForStream().add(streamKey(shardOf(message.getSessionId())), fields);
+        if (recordId == null) {
+            throw new RuntimeException("消息写入队列失败");
+        }
+    }
+
+    @Override
+    public void persist(ChatMessage message, String preview) {
+        List<QueuedMessage> single = new ArrayList<>(1);
+        single.add(new QueuedMessage(null, message, preview));
+        commit(single, false);
+    }
+
+    /**
+     * 定时认领超时未确认的消息（本节点写库失败或其他节点宕机遗留）
+     */
+    @Scheduled(fixedDelayString = "${chat.write-behind.claim-interval:30000}")
+    public void reclaimPending() {
+        for (int shard = 0; shard < shards; shard++) {
+            String key = streamKey(shard);
+            try {
+                PendingMessages pending = stringRedisTemplate.opsForStream()
+                        .pending(key, CONSUMER_GROUP, Range.unbounded(), batchSize);
+                List<RecordId> idle = new ArrayList<>();
+                Set<RecordId> exhausted = new HashSet<>();
+                for (PendingMessage message : pending) {
+                    if (message.getElapsedTimeSinceLastDelivery().toMillis() >= claimIdleMillis) {
+                        idle.add(message.getId());
+                        if (message.getTotalDeliveryCount() >= maxDeliveries) {
+                            exhausted.add(message.getId());
+                        }
+                    }
+                }
+                if (idle.isEmpty()) {
+                    continue;
+                }
+                List<MapRecord<String, Object, Object>> claimed = stringRedisTemplate.opsForStream().claim(
+                        key, CONSUMER_GROUP, consumerName, Duration.ofMillis(claimIdleMillis),
+                        idle.toArray(new RecordId[0]));
+                if (claimed == null || claimed.isEmpty()) {
+                    continue;
+                }
+                logger.warn("Reclaimed {} pending chat messages from {}", claimed.size(), key);
+                handle(key, claimed, true, exhausted);
+            } catch (Exception e) {
+                logger.error("Failed to reclaim pending chat messages from {}", key, e);
+            }
+        }
+    }
+
+    // read 的偏移量参数为泛型可变参数，调用时生成 StreamOffset<String>[]；数组只在调用内使用，不会被写入其他类型
+    @SuppressWarnings("unchecked")
+    private void consumeLoop(String key) {
+        Consumer consumer = Consumer.from(CONSUMER_GROUP, consumerName);
+        StreamReadOptions options = StreamReadOptions.empty()
+                .count(batchSize)
+                .block(Duration.ofMillis(blockTimeoutMillis));
+        while (running) {
+            try {
+                List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream()
+                        .read(consumer, options, StreamOffset.create(key, ReadOffset.lastConsumed()));
+                if (records != null && !records.isEmpty()) {
+                    handle(key, records, false, Collections.emptySet());
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                logger.error("Chat write-behind consumer failed on {}", key, e);
+                sleepQuietly(blockTimeoutMillis);
+            }
+        }
+    }
+
+    /**
+     * 落库一批消息，成功后确认并删除；失败时保留在待确认列表中，等待重新认领。
+     * 投递次数已用尽的消息逐条落库，仍失败的单独移入死信流，不影响同批其他消息
+     *
+     * @param exhausted 投递次数已用尽的记录
+     */
+    private void handle(String key, List<MapRecord<String, Object, Object>> records, boolean recovered, Set<RecordId> exhausted) {
+        List<QueuedMessage> messages = new ArrayList<>(records.size());
+        List<QueuedMessage> lastChance = new ArrayList<>();
+        List<RecordId> done = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            QueuedMessage message = decode(record);
+            if (message == null) {
+                deadLetter(key, record, "malformed record");
+                done.add(record.getId());
+            } else if (exhausted.contains(record.getId())) {
+                lastChance.add(message);
+            } else {
+                messages.add(message);
+            }
+        }
+
+        if (!messages.isEmpty()) {
+            try {
+                commit(messages, recovered);
+                for (QueuedMessage message : messages) {
+                    done.add(message.recordId);
+                }
+            } catch (Exception e) {
+                logger.error("Failed to persist {} chat messages from {}, will retry", messages.size(), key, e);
+            }
+        }
+
+        for (QueuedMessage message : lastChance) {
+            try {
+                List<QueuedMessage> single = new ArrayList<>(1);
+                single.add(message);
+                commit(single, true);
+                done.add(message.recordId);
+            } catch (Exception e) {
+                logger.error("Chat message {} failed {} deliveries, moving it to {}",
+                        message.message.getId(), maxDeliveries, DEAD_LETTER_KEY, e);
+                if (deadLetter(key, message.record, e.toString())) {
+                    done.add(message.recordId);
+                }
+            }
+        }
+
+        if (!done.isEmpty()) {
+            RecordId[] ids = done.toArray(new RecordId[0]);
+            stringRedisTemplate.opsForStream().acknowledge(key, CONSUMER_GROUP, ids);
+            stringRedisTemplate.opsForStream().delete(key, ids);
+        }
+    }
+
+    /**
+     * 将记录原样移入死信流，附带来源和失败原因，供人工排查后重放
+     *
+     * @return 是否写入成功，失败时记录继续保留在原分片的待确认列表中
+     */
+    private boolean deadLetter(String key, MapRecord<String, Object, Object> record, String reason) {
+        try {
+            Map<String, String> fields = new HashMap<>();
+            for (Map.Entry<Object, Object> entry : record.getValue().entrySet()) {
+                fields.put(String.valueOf(entry.getKey()), String.valueOf(entry.getValue()));
+            }
+            fields.put("source", key + "/" + record.getId().getValue());
+            fields.put("reason", reason != null ? reason : "");
+            return stringRedisTemplate.opsForStream().add(DEAD_LETTER_KEY, fields) != null;
+        } catch (Exception e) {
+            logger.error("Failed to move chat write record {} to {}", record.getId(), DEAD_LETTER_KEY, e);
+            return false;
+        }
+    }
+
+    /**
+     * 一个事务内批量插入消息，并按会话合并为一条会话更新
+     */
+    private void commit(List<QueuedMessage> messages, boolean recovered) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<QueuedMessage> toInsert = messages;
+            if (recovered) {
+                // 重新投递的消息可能已落库，跳过以免重复累加未读数
+                Set<Long> ids = new HashSet<>();
+                for (QueuedMessage message : messages) {
+                    ids.add(message.message.getId());
+                }
+                Set<Long> existing = new HashSet<>(chatMessageMapper.selectExistingIds(ids));
+                if (!existing.isEmpty()) {
+                    toInsert = new ArrayList<>();
+                    for (QueuedMessage message : messages) {
+                        if (!existing.contains(message.message.getId())) {
+                            toInsert.add(message);
+                        }
+                    }
+                }
+            }
+            if (toInsert.isEmpty()) {
+                return;
+            }
+
+            List<QueuedMessage> ordered = new ArrayList<>(toInsert);
+            ordered.sort(Comparator.comparing(message -> message.message.getId()));
+            List<ChatMessage> rows = new ArrayList<>(ordered.size());
+            Map<Long, SessionDelta> deltas = new LinkedHashMap<>();
+            for (QueuedMessage queued : ordered) {
+                rows.add(queued.message);
+                deltas.computeIfAbsent(queued.message.getSessionId(), id -> new SessionDelta()).apply(queued);
+            }
+            chatMessageMapper.insertBatch(rows);
+            for (Map.Entry<Long, SessionDelta> entry : deltas.entrySet()) {
+                SessionDelta delta = entry.getValue();
+                chatSessionMapper.applyMessageDelta(entry.getKey(), delta.lastMessageId, delta.lastMessagePreview,
+                        delta.lastMessageTime);
+            }
+        });
+    }
+
+    private QueuedMessage decode(MapRecord<String, Object, Object> record) {
+        try {
+            Object data = record.getValue().get(FIELD_DATA);
+            Object preview = record.getValue().get(FIELD_PREVIEW);
+            ChatMessage message = objectMapper.readValue(String.valueOf(data), ChatMessage.class);
+            return new QueuedMessage(record, message, preview != null ? preview.toString() : null);
+        } catch (Exception e) {
+            logger.error("Discarding malformed chat write record {}", record.getId(), e);
+            return null;
+        }
+    }
+
+    private void ensureGroup(String key) {
+        try {
+            stringRedisTemplate.execute((RedisCallback<String>) connection -> createGroup(connection, key));
+        } catch (Exception e) {
+            // 消费组已存在（BUSYGROUP）
+            logger.debug("Chat write group already exists on {}", key);
+        }
+    }
+
+    private String createGroup(RedisConnection connection, String key) {
+        return connection.streamCommands().xGroupCreate(key.getBytes(StandardCharsets.UTF_8),
+                CONSUMER_GROUP, ReadOffset.from("0"), true);
+    }
+
+    private int shardOf(Long sessionId) {
+        return (int) Math.floorMod(sessionId, (long) shards);
+    }
+
+    private String streamKey(int shard) {
+        return STREAM_KEY_PREFIX + shard;
+    }
+
+    private void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class QueuedMessage {
+        private final MapRecord<String, Object, Object> record;
+        private final RecordId recordId;
+        private final ChatMessage message;
+        private final String preview;
+
+        QueuedMessage(MapRecord<String, Object, Object> record, ChatMessage message, String preview) {
+            this.record = record;
+            this.recordId = record != null ? record.getId() : null;
+            this.message = message;
+            this.preview = preview;
+        }
+    }
+
+    /**
+     * 同一会话一批消息合并后的更新：取ID最大的消息作为最近消息
+     */
+    private static class SessionDelta {
+        private Long lastMessageId;
+        private String lastMessagePreview;
+        private Date lastMessageTime;
+
+        void apply(QueuedMessage queued) {
+            ChatMessage message = queued.message;
+            lastMessageId = message.getId();
+            lastMessagePreview = queued.preview;
+            lastMessageTime = message.getCreateTime();
+        }
+    }
+}
@@ -1,22 +1,33 @@
 package com.cityquest.service.impl;
 
+import com.cityquest.dto.chat.ChatReadReceipt;
+import com.cityquest.dto.user.UserSummary;
 import com.cityquest.entity.ChatMessage;
 import com.cityquest.entity.ChatSession;
-import com.cityquest.entity.UserInfo;
 import com.cityquest.mapper.ChatMessageMapper;
 import com.cityquest.mapper.ChatSessionMapper;
-import com.cityquest.mapper.UserMapper;
+import com.cityquest.service.ChatMessageWriteBehindService;
 import com.cityquest.service.ChatService;
-import com.cityquest.service.SocialService;
+import com.cityquest.service.ChatSessionListService;
+import com.cityquest.service.FollowGraphService;
+import com.cityquest.service.UserSummaryCacheService;
 import com.cityquest.util.SnowflakeIdGenerator;
+import com.cityquest.util.TransactionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -25,7 +36,10 @@ import java.util.Objects;
 @Service
 public class ChatServiceImpl implements ChatService {
 
+    private static final Logger logger = LoggerFactory.getLogger(ChatServiceImpl.class);
+
     private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
 
     @Autowired
     private ChatSessionMapper chatSessionMapper;
@@ -34,51 +48,47 @@ public class ChatServiceImpl implements ChatService {
     private ChatMessageMapper chatMessageMapper;
 
     @Autowired
-    private SocialService socialService;
+    private FollowGraphService followGraphService;
 
     @Autowired
-    private UserMapper userMapper;
+    private UserSummaryCacheService userSummaryCacheService;
 
     @Autowired
     private SnowflakeIdGenerator snowflakeIdGenerator;
 
+    @Autowired
+    private ChatMessageWriteBehindService chatMessageWriteBehindService;
+
+    @Autowired
+    private ChatSessionListService chatSessionListService;
+
+    // 是否先写入持久化队列再异步落库
+    @Value("${chat.write-behind.enabled:true}")
+    private boolean writeBehindEnabled;
+
+    // 最多缓存的会话数
+    @Value("${chat.session-cache.max-size:10000}")
+    private int sessionCacheSize;
+
+    // 用户对（较小ID:较大ID） -> 会话
+    private final Map<String, ChatSession> sessionCache = new LinkedHashMap<String, ChatSession>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ChatSession> eldest) {
+            return size() > sessionCacheSize;
+        }
+    };
+
     @Override
     @Transactional
     public ChatSession getOrCreateSession(Long userId, Long targetUserId) {
         validateUsers(userId, targetUserId);
-        ensureMutualFollow(userId, targetUserId);
-
-        SessionPair pair = normalizeUsers(userId, targetUserId);
-        ChatSession session = chatSessionMapper.selectByUsers(pair.userA, pair.userB);
-        if (session != null) {
-            return session;
-        }
-
-        Date now = new Date();
-        ChatSession newSession = new ChatSession();
-        newSession.setId(snowflakeIdGenerator.nextId());
-        newSession.setUserAId(pair.userA);
-        newSession.setUserBId(pair.userB);
-        newSession.setUnreadCountA(0);
-        newSession.setUnreadCountB(0);
-        newSession.setCreateTime(now);
-        newSession.setUpdateTime(now);
-
-        chatSessionMapper.insert(newSession);
-        return newSession;
+        return resolveSession(userId, targetUserId);
     }
 
     @Override
-    @Transactional
     public ChatMessage sendMessage(Long senderId, Long receiverId, Integer contentType, String content, String extra) {
         validateUsers(senderId, receiverId);
-        ensureMutualFollow(senderId, receiverId);
-
-        ChatSession session = getOrCreateSession(senderId, receiverId);
-
-        if (!Objects.equals(session.getUserAId(), senderId) && !Objects.equals(session.getUserBId(), senderId)) {
-            throw new RuntimeException("当前会话不属于该用户");
-        }
+        ChatSession session = resolveSession(senderId, receiverId);
 
         Date now = new Date();
 
@@ -93,39 +103,31 @@ public class ChatServiceImpl implements ChatService {
         message.setExtra(extra);
         message.setCreateTime(now);
 
-        int inserted = chatMessageMapper.insert(message);
-        if (inserted <= 0) {
-            throw new RuntimeException("发送消息失败");
+        String preview = generatePreview(message);
+        boolean queued = false;
+        if (writeBehindEnabled) {
+            try {
+                chatMessageWriteBehindService.enqueue(message, preview);
+                queued = true;
+            } catch (Exception e) {
+                logger.warn("Chat write queue unavailable, persisting message {} synchronously", message.getId(), e);
+            }
         }
-
-        ChatSession updated = new ChatSession();
-        updated.setId(session.getId());
-        updated.setLastMessageId(message.getId());
-        updated.setLastMessagePreview(generatePreview(message));
-        updated.setLastMessageTime(now);
-        updated.setUpdateTime(now);
-        chatSessionMapper.update(updated);
-
-        chatSessionMapper.updateUnreadCount(session.getId(), senderId, 0);
-        chatSessionMapper.incrementUnreadCount(session.getId(), receiverId);
-
+        if (!queued) {
+            chatMessageWriteBehindService.persist(message, preview);
+        }
+        chatSessionListService.onMessage(message, preview);
         return message;
     }
 
     @Override
     public List<ChatSession> listUserSessions(Long userId) {
-        return chatSessionMapper.selectByUserId(userId);
+        return chatSessionListService.getRecentSessions(userId);
     }
 
     @Override
     public List<ChatMessage> getSessionMessages(Long sessionId, Long userId, Integer page, Integer pageSize) {
-        ChatSession session = chatSessionMapper.selectById(sessionId);
-        if (session == null) {
-            throw new RuntimeException("会话不存在");
-        }
-        if (!Objects.equals(session.getUserAId(), userId) && !Objects.equals(session.getUserBId(), userId)) {
-            throw new RuntimeException("无权访问该会话");
-        }
+        ChatSession session = requireParticipant(sessionId, userId);
 
         int pageNo = (page == null || page < 1) ? 1 : page;
         int size = (pageSize == null || pageSize < 1) ? DEFAULT_PAGE_SIZE : pageSize;
@@ -133,12 +135,87 @@ public class ChatServiceImpl implements ChatService {
 
         List<ChatMessage> messages = chatMessageMapper.selectBySessionId(sessionId, offset, size);
         Collections.reverse(messages);
+        applyReadStatus(session, messages);
         return messages;
     }
 
+    @Override
+    public Map<String, Object> getSessionMessagesBySeek(Long sessionId, Long userId, Long beforeMessageId,
+                                                        Long afterMessageId, Integer pageSize) {
+        ChatSession session = requireParticipant(sessionId, userId);
+
+        int size = (pageSize == null || pageSize < 1) ? DEFAULT_PAGE_SIZE : Math.min(pageSize, MAX_PAGE_SIZE);
+        // 多取一条用于判断是否还有更多
+        List<ChatMessage> messages;
+        if (afterMessageId != null) {
+            messages = chatMessageMapper.selectBySessionAfter(sessionId, afterMessageId, size + 1);
+        } else {
+            messages = chatMessageMapper.selectBySessionBefore(sessionId, beforeMessageId, size + 1);
+        }
+        boolean hasMore = messages.size() > size;
+        if (hasMore) {
+            messages = new ArrayList<>(messages.subList(0, size));
+        }
+        if (afterMessageId == null) {
+            Collections.reverse(messages);
+        }
+        applyReadStatus(session, messages);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("list", messages);
+        result.put("hasMore", hasMore);
+        result.put("oldestId", messages.isEmpty() ? beforeMessageId : messages.get(0).getId());
+        result.put("newestId", messages.isEmpty() ? afterMessageId : messages.get(messages.size() - 1).getId());
+        return result;
+    }
+
     @Override
     @Transactional
-    public void markSessionMessagesAsRead(Long sessionId, Long userId) {
+    public ChatReadReceipt markSessionMessagesAsRead(Long sessionId, Long userId, Long lastReadMessageId) {
+        ChatSession session = requireParticipant(sessionId, userId);
+
+        // 雪花ID按时间递增，新生成的ID大于此前发送的所有消息
+        long requested = lastReadMessageId != null ? lastReadMessageId : snowflakeIdGenerator.nextId();
+        boolean isA = Objects.equals(session.getUserAId(), userId);
+        Long current = isA ? session.getLastReadIdA() : session.getLastReadIdB();
+        long lastReadId = current != null ? Math.max(current, requested) : requested;
+
+        // 部分已读时按推进范围内收到的消息数扣减缓存中的未读数（尚未落库的消息不计，宁可多不可少）
+        long previous = current != null ? current : 0L;
+        int readCount = lastReadMessageId != null && lastReadId > previous
+                ? chatMessageMapper.countReceivedBetween(sessionId, userId, previous, lastReadId)
+                : 0;
+        chatSessionMapper.markReadUpTo(sessionId, userId, lastReadId);
+        TransactionUtil.afterCommit(() -> chatSessionListService.onRead(sessionId, userId, lastReadId, readCount));
+
+        return ChatReadReceipt.builder()
+                .sessionId(sessionId)
+                .readerId(userId)
+                .peerId(isA ? session.getUserBId() : session.getUserAId())
+                .lastReadMessageId(lastReadId)
+                .build();
+    }
+
+    @Override
+    public boolean isMutualFollow(Long userId, Long targetUserId) {
+        return followGraphService.isMutualFollow(userId, targetUserId);
+    }
+
+    /**
+     * 已读状态由会话水位决定，不再逐条更新消息，返回前按接收方水位补全
+     */
+    private void applyReadStatus(ChatSession session, List<ChatMessage> messages) {
+        long readA = session.getLastReadIdA() != null ? session.getLastReadIdA() : 0L;
+        long readB = session.getLastReadIdB() != null ? session.getLastReadIdB() : 0L;
+        for (ChatMessage message : messages) {
+            long watermark = Objects.equals(message.getReceiverId(), session.getUserAId()) ? readA : readB;
+            if (message.getId() <= watermark && (message.getStatus() == null || message.getStatus() < 2)) {
+                message.setStatus(2);
+            }
+        }
+    }
+
+    private ChatSession requireParticipant(Long sessionId, Long userId) {
         ChatSession session = chatSessionMapper.selectById(sessionId);
         if (session == null) {
             throw new RuntimeException("会话不存在");
@@ -146,22 +223,7 @@ public class ChatServiceImpl implements ChatService {
         if (!Objects.equals(session.getUserAId(), userId) && !Objects.equals(session.getUserBId(), userId)) {
             throw new RuntimeException("无权访问该会话");
         }
-
-        List<ChatMessage> unreadList = chatMessageMapper.selectUnreadBySessionAndReceiver(sessionId, userId);
-        if (!unreadList.isEmpty()) {
-            List<Long> ids = new ArrayList<>(unreadList.size());
-            for (ChatMessage message : unreadList) {
-                ids.add(message.getId());
-            }
-            chatMessageMapper.updateStatusBatch(ids, 2);
-            chatSessionMapper.updateUnreadCount(sessionId, userId, 0);
-        }
-    }
-
-    @Override
-    public boolean isMutualFollow(Long userId, Long targetUserId) {
-        return socialService.isFollowing(userId, targetUserId)
-                && socialService.isFollowing(targetUserId, userId);
+        return session;
     }
 
     private void validateUsers(Long userId, Long targetUserId) {
@@ -171,9 +233,8 @@ public class ChatServiceImpl implements ChatService {
         if (userId.equals(targetUserId)) {
             throw new RuntimeException("不能与自己聊天");
         }
-        UserInfo user = userMapper.selectById(userId);
-        UserInfo target = userMapper.selectById(targetUserId);
-        if (user == null || target == null) {
+        Map<Long, UserSummary> users = userSummaryCacheService.getAll(List.of(userId, targetUserId));
+        if (!users.containsKey(userId) || !users.containsKey(targetUserId)) {
             throw new RuntimeException("用户不存在");
         }
     }
@@ -184,6 +245,57 @@ public class ChatServiceImpl implements ChatService {
         }
     }
 
+    /**
+     * 校验互关后取用户对的会话，会话参与方不会变化，可直接缓存
+     */
+    private ChatSession resolveSession(Long userId, Long targetUserId) {
+        ensureMutualFollow(userId, targetUserId);
+
+        SessionPair pair = normalizeUsers(userId, targetUserId);
+        String key = pair.userA + ":" + pair.userB;
+        ChatSession session;
+        synchronized (sessionCache) {
+            session = sessionCache.get(key);
+        }
+        if (session != null) {
+            return session;
+        }
+
+        session = findOrCreateSession(pair);
+        synchronized (sessionCache) {
+            sessionCache.put(key, session);
+        }
+        return session;
+    }
+
+    private ChatSession findOrCreateSession(SessionPair pair) {
+        ChatSession session = chatSessionMapper.selectByUsers(pair.userA, pair.userB);
+        if (session != null) {
+            return session;
+        }
+
+        Date now = new Date();
+        ChatSession newSession = new ChatSession();
+        newSession.setId(snowflakeIdGenerator.nextId());
+        newSession.setUserAId(pair.userA);
+        newSession.setUserBId(pair.userB);
+        newSession.setUnreadCountA(0);
+        newSession.setUnreadCountB(0);
+        newSession.setLastReadIdA(0L);
+        newSession.setLastReadIdB(0L);
+        newSession.setCreateTime(now);
+        newSession.setUpdateTime(now);
+
+        try {
+            chatSessionMapper.insert(newSession);
+        } catch (DuplicateKeyException e) {
+            // 双方同时发起会话
+            return chatSessionMapper.selectByUsers(pair.userA, pair.userB);
+        }
+        TransactionUtil.afterCommit(() -> chatSessionListService.onSessionCreated(newSession));
+        return newSession;
+    }
+
     private SessionPair normalizeUsers(Long userId, Long targetUserId) {
         if (userId < targetUserId) {
             return new SessionPair(userId, targetUserId);
@@ -0,0 +1,327 @@
+package com.cityquest.service.impl;
+
+import com.cityquest.entity.ChatMessage;
+import com.cityquest.entity.ChatSession;
+import com.cityquest.mapper.ChatSessionMapper;
+import com.cityquest.service.ChatSessionListService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 用户最近会话列表服务实现
+ * chat_sessions:{userId} 为有序集合，成员为会话ID、分值为最近消息时间，分值为0的哨兵成员表示列表已构建；
+ * chat_session_state:{sessionId} 为哈希，保存会话最近消息与双方未读数，由双方列表共享；
+ * 列表只保留最近消息时间最新的 max-sessions 个会话，更早的会话不在列表中
+ */
+@Service
+public class ChatSessionListServiceImpl implements ChatSessionListService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatSessionListServiceImpl.class);
+
+    private static final String LIST_KEY_PREFIX = "chat_sessions:";
+    private static final String STATE_KEY_PREFIX = "chat_session_state:";
+    private static final String SENTINEL = "0";
+
+    // 消息ID超出 Lua 数字精度，按十进制字符串比较大小
+    private static final String GREATER_FUNCTION =
+            "local function gt(a, b) " +
+            "  if #a ~= #b then return #a > #b end " +
+            "  return a > b " +
+            "end ";
+
+    // 会话状态不存在时删除双方列表，下次读取从数据库重建
+    private static final String MESSAGE_SCRIPT = GREATER_FUNCTION +
+            "if redis.call('EXISTS', KEYS[1]) == 0 then " +
+            "  redis.call('DEL', KEYS[2], KEYS[3]) " +
+            "  return 0 " +
+            "end " +
+            "if gt(ARGV[1], redis.call('HGET', KEYS[1], 'lastMessageId') or '') then " +
+            "  redis.call('HSET', KEYS[1], 'lastMessageId', ARGV[1], 'preview', ARGV[2], 'lastMessageTime', ARGV[3]) " +
+            "end " +
+            "if ARGV[4] == 'a' then " +
+            "  redis.call('HSET', KEYS[1], 'unreadA', 0) " +
+            "  redis.call('HINCRBY', KEYS[1], 'unreadB', 1) " +
+            "else " +
+            "  redis.call('HSET', KEYS[1], 'unreadB', 0) " +
+            "  redis.call('HINCRBY', KEYS[1], 'unreadA', 1) " +
+            "end " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[5]) " +
+            "for i = 2, 3 do " +
+            "  if redis.call('EXISTS', KEYS[i]) == 1 then " +
+            "    local score = redis.call('ZSCORE', KEYS[i], ARGV[6]) " +
+            "    if not score or tonumber(score) < tonumber(ARGV[3]) then " +
+            "      redis.call('ZADD', KEYS[i], ARGV[3], ARGV[6]) " +
+            "      redis.call('ZREMRANGEBYRANK', KEYS[i], 1, -(tonumber(ARGV[7]) + 1)) " +
+            "    end " +
+            "  end " +
+            "end " +
+            "return 1";
+
+    // 仅在会话状态不存在时写入，避免数据库中尚未落库的旧值覆盖 Redis 中较新的状态
+    private static final String STATE_SCRIPT =
+            "if redis.call('EXISTS', KEYS[1]) == 0 then " +
+            "  redis.call('HSET', KEYS[1], 'userA', ARGV[1], 'userB', ARGV[2], 'lastMessageId', ARGV[3], " +
+            "    'preview', ARGV[4], 'lastMessageTime', ARGV[5], 'unreadA', ARGV[6], 'unreadB', ARGV[7], " +
+            "    'createTime', ARGV[8], 'lastReadA', ARGV[9], 'lastReadB', ARGV[10]) " +
+            "end " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[11]) " +
+            "local time = redis.call('HGET', KEYS[1], 'lastMessageTime') " +
+            "if time == '' then time = redis.call('HGET', KEYS[1], 'createTime') end " +
+            "return time";
+
+    // 删除旧列表后写入哨兵及全部会话，整体原子执行，读取方不会看到只写了一半的列表
+    private static final String REBUILD_SCRIPT =
+            "redis.call('DEL', KEYS[1]) " +
+            "redis.call('ZADD', KEYS[1], 0, ARGV[2]) " +
+            "for i = 3, #ARGV, 2 do " +
+            "  redis.call('ZADD', KEYS[1], ARGV[i], ARGV[i + 1]) " +
+            "end " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[1]) " +
+            "return 1";
+
+    private static final String READ_SCRIPT = GREATER_FUNCTION +
+            "local side " +
+            "if redis.call('HGET', KEYS[1], 'userA') == ARGV[1] then side = 'A' " +
+            "elseif redis.call('HGET', KEYS[1], 'userB') == ARGV[1] then side = 'B' " +
+            "else return 0 end " +
+            "if not gt(redis.call('HGET', KEYS[1], 'lastMessageId') or '', ARGV[2]) then " +
+            "  redis.call('HSET', KEYS[1], 'unread' .. side, 0) " +
+            "elseif tonumber(ARGV[3]) > 0 then " +
+            "  local unread = tonumber(redis.call('HGET', KEYS[1], 'unread' .. side) or '0') - tonumber(ARGV[3]) " +
+            "  redis.call('HSET', KEYS[1], 'unread' .. side, math.max(unread, 0)) " +
+            "end " +
+            "if gt(ARGV[2], redis.call('HGET', KEYS[1], 'lastRead' .. side) or '') then " +
+            "  redis.call('HSET', KEYS[1], 'lastRead' .. side, ARGV[2]) " +
+            "end " +
+            "return 1";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ChatSessionMapper chatSessionMapper;
+
+    // 每个用户列表最多保留的会话数
+    @Value("${chat.session-list.max-sessions:200}")
+    private int maxSessions;
+
+    // 列表及会话状态的空闲过期时间（毫秒）
+    @Value("${chat.session-list.ttl:604800000}")
+    private long ttlMillis;
+
+    @Override
+    public List<ChatSession> getRecentSessions(Long userId) {
+        if (userId == null) {
+            return new ArrayList<>();
+        }
+        try {
+            String key = LIST_KEY_PREFIX + userId;
+            List<ChatSession> sessions = readList(key);
+            if (sessions == null) {
+                rebuild(userId, key);
+                sessions = readList(key);
+            }
+            if (sessions != null) {
+                return sessions;
+            }
+        } catch (Exception e) {
+            logger.warn("Chat session list of user {} unavailable, falling back to database", userId, e);
+        }
+        List<ChatSession> sessions = chatSessionMapper.selectByUserId(userId);
+        return sessions.size() > maxSessions ? new ArrayList<>(sessions.subList(0, maxSessions)) : sessions;
+    }
+
+    @Override
+    public void onSessionCreated(ChatSession session) {
+        try {
+            String createTime = String.valueOf(session.getCreateTime().getTime());
+            Object time = stringRedisTemplate.execute((RedisCallback<Object>) connection ->
+                    ((StringRedisConnection) connection).eval(STATE_SCRIPT, ReturnType.VALUE, 1,
+                            stateArgs(session)));
+            String score = time != null ? asString(time) : createTime;
+            addIfBuilt(LIST_KEY_PREFIX + session.getUserAId(), session.getId(), score);
+            addIfBuilt(LIST_KEY_PREFIX + session.getUserBId(), session.getId(), score);
+        } catch (Exception e) {
+            logger.warn("Failed to add chat session {} to session lists", session.getId(), e);
+            invalidate(session.getUserAId(), session.getUserBId());
+        }
+    }
+
+    @Override
+    public void onMessage(ChatMessage message, String preview) {
+        Long senderId = message.getSenderId();
+        Long receiverId = message.getReceiverId();
+        // 会话中 user_a_id 为较小的用户ID
+        boolean senderIsA = senderId < receiverId;
+        Long userA = senderIsA ? senderId : receiverId;
+        Long userB = senderIsA ? receiverId : senderId;
+        try {
+            stringRedisTemplate.execute((RedisCallback<Object>) connection ->
+                    ((StringRedisConnection) connection).eval(MESSAGE_SCRIPT, ReturnType.INTEGER, 3,
+                            STATE_KEY_PREFIX + message.getSessionId(),
+                            LIST_KEY_PREFIX + userA,
+                            LIST_KEY_PREFIX + userB,
+                            String.valueOf(message.getId()),
+                            preview != null ? preview : "",
+                            String.valueOf(message.getCreateTime().getTime()),
+                            senderIsA ? "a" : "b",
+                            String.valueOf(ttlMillis),
+                            String.valueOf(message.getSessionId()),
+                            String.valueOf(maxSessions)));
+        } catch (Exception e) {
+            logger.warn("Failed to update chat session lists for session {}", message.getSessionId(), e);
+            invalidate(userA, userB);
+        }
+    }
+
+    @Override
+    public void onRead(Long sessionId, Long userId, Long lastReadId, int readCount) {
+        try {
+            stringRedisTemplate.execute((RedisCallback<Object>) connection ->
+                    ((StringRedisConnection) connection).eval(READ_SCRIPT, ReturnType.INTEGER, 1,
+                            STATE_KEY_PREFIX + sessionId, String.valueOf(userId), String.valueOf(lastReadId),
+                            String.valueOf(readCount)));
+        } catch (Exception e) {
+            logger.warn("Failed to clear unread count of session {} for user {}", sessionId, userId, e);
+            invalidate(userId);
+        }
+    }
+
+    /**
+     * 读取已构建的列表，列表不存在或有会话状态已过期时返回null
+     */
+    private List<ChatSession> readList(String key) {
+        Set<String> members = stringRedisTemplate.opsForZSet().reverseRange(key, 0, maxSessions);
+        if (members == null || members.isEmpty()) {
+            return null;
+        }
+        List<String> sessionIds = new ArrayList<>(members.size());
+        for (String member : members) {
+            if (!SENTINEL.equals(member)) {
+                sessionIds.add(member);
+            }
+        }
+        List<Object> states = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (String sessionId : sessionIds) {
+                conn.hGetAll(STATE_KEY_PREFIX + sessionId);
+            }
+            conn.pExpire(key, ttlMillis);
+            return null;
+        });
+
+        List<ChatSession> sessions = new ArrayList<>(sessionIds.size());
+        for (int i = 0; i < sessionIds.size(); i++) {
+            @SuppressWarnings("unchecked")
+            Map<String, String> state = (Map<String, String>) states.get(i);
+            if (state == null || state.isEmpty()) {
+                return null;
+            }
+            sessions.add(toSession(Long.valueOf(sessionIds.get(i)), state));
+        }
+        return sessions;
+    }
+
+    private void rebuild(Long userId, String key) {
+        List<ChatSession> sessions = chatSessionMapper.selectByUserId(userId);
+        List<ChatSession> recent = sessions.size() > maxSessions ? sessions.subList(0, maxSessions) : sessions;
+        List<Object> scores = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (ChatSession session : recent) {
+                conn.eval(STATE_SCRIPT, ReturnType.VALUE, 1, stateArgs(session));
+            }
+            return null;
+        });
+        String[] keysAndArgs = new String[3 + recent.size() * 2];
+        keysAndArgs[0] = key;
+        keysAndArgs[1] = String.valueOf(ttlMillis);
+        keysAndArgs[2] = SENTINEL;
+        for (int i = 0; i < recent.size(); i++) {
+            keysAndArgs[3 + i * 2] = asString(scores.get(i));
+            keysAndArgs[4 + i * 2] = String.valueOf(recent.get(i).getId());
+        }
+        stringRedisTemplate.execute((RedisCallback<Object>) connection ->
+                ((StringRedisConnection) connection).eval(REBUILD_SCRIPT, ReturnType.INTEGER, 1, keysAndArgs));
+    }
+
+    private void addIfBuilt(String key, Long sessionId, String score) {
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            if (Boolean.TRUE.equals(conn.exists(key))) {
+                conn.zAdd(key, Double.parseDouble(score), String.valueOf(sessionId));
+            }
+            return null;
+        });
+    }
+
+    private void invalidate(Long... userIds) {
+        try {
+            List<String> keys = new ArrayList<>(userIds.length);
+            for (Long userId : userIds) {
+                keys.add(LIST_KEY_PREFIX + userId);
+            }
+            stringRedisTemplate.delete(keys);
+        } catch (Exception e) {
+            logger.warn("Failed to invalidate chat session lists", e);
+        }
+    }
+
+    private String[] stateArgs(ChatSession session) {
+        return new String[]{
+                STATE_KEY_PREFIX + session.getId(),
+                String.valueOf(session.getUserAId()),
+                String.valueOf(session.getUserBId()),
+                session.getLastMessageId() != null ? String.valueOf(session.getLastMessageId()) : "",
+                session.getLastMessagePreview() != null ? session.getLastMessagePreview() : "",
+                session.getLastMessageTime() != null ? String.valueOf(session.getLastMessageTime().getTime()) : "",
+                String.valueOf(session.getUnreadCountA() != null ? session.getUnreadCountA() : 0),
+                String.valueOf(session.getUnreadCountB() != null ? session.getUnreadCountB() : 0),
+                String.valueOf(session.getCreateTime().getTime()),
+                String.valueOf(session.getLastReadIdA() != null ? session.getLastReadIdA() : 0L),
+                String.valueOf(session.getLastReadIdB() != null ? session.getLastReadIdB() : 0L),
+                String.valueOf(ttlMillis)
+        };
+    }
+
+    private ChatSession toSession(Long sessionId, Map<String, String> state) {
+        ChatSession session = new ChatSession();
+        session.setId(sessionId);
+        session.setUserAId(Long.valueOf(state.get("userA")));
+        session.setUserBId(Long.valueOf(state.get("userB")));
+        session.setLastMessageId(parseLong(state.get("lastMessageId")));
+        String preview = state.get("preview");
+        session.setLastMessagePreview(preview == null || preview.isEmpty() ? null : preview);
+        Long lastMessageTime = parseLong(state.get("lastMessageTime"));
+        session.setLastMessageTime(lastMessageTime != null ? new Date(lastMessageTime) : null);
+        session.setUnreadCountA(Integer.valueOf(state.getOrDefault("unreadA", "0")));
+        session.setUnreadCountB(Integer.valueOf(state.getOrDefault("unreadB", "0")));
+        session.setLastReadIdA(Long.valueOf(state.getOrDefault("lastReadA", "0")));
+        session.setLastReadIdB(Long.valueOf(state.getOrDefault("lastReadB", "0")));
+        Long createTime = parseLong(state.get("createTime"));
+        session.setCreateTime(createTime != null ? new Date(createTime) : null);
+        session.setUpdateTime(session.getLastMessageTime() != null ? session.getLastMessageTime() : session.getCreateTime());
+        return session;
+    }
+
+    private static String asString(Object value) {
+        return value instanceof byte[] ? new String((byte[]) value, StandardCharsets.UTF_8) : String.valueOf(value);
+    }
+
+    private static Long parseLong(String value) {
+        return value == null || value.isEmpty() ? null : Long.valueOf(value);
+    }
+}
@@ -2,6 +2,7 @@ package com.cityquest.service.impl;
 
 import com.cityquest.entity.ExchangeOrder;
 import com.cityquest.entity.ExchangeOrderItem;
+import com.cityquest.entity.PointsTransaction;
 import com.cityquest.entity.ProductInfo;
 import com.cityquest.entity.UserInfo;
 import com.cityquest.mapper.ExchangeOrderItemMapper;
@@ -9,14 +10,19 @@ import com.cityquest.mapper.ExchangeOrderMapper;
 import com.cityquest.mapper.ProductMapper;
 import com.cityquest.mapper.UserMapper;
 import com.cityquest.service.ExchangeOrderService;
+import com.cityquest.service.PointsLedgerService;
+import com.cityquest.service.StockReservationService;
+import com.cityquest.util.CursorUtil;
 import com.cityquest.util.SnowflakeIdGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -41,6 +47,28 @@ public class ExchangeOrderServiceImpl implements ExchangeOrderService {
     @Autowired
     private SnowflakeIdGenerator snowflakeIdGenerator;
 
+    @Autowired
+    private PointsLedgerService pointsLedgerService;
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    // 管理后台订单总数缓存的有效期（毫秒）
+    @Value("${mall.order.count-cache.ttl:30000}")
+    private long countCacheTtlMillis;
+
+    // 最多缓存的筛选条件数
+    @Value("${mall.order.count-cache.max-size:1000}")
+    private int countCacheMaxSize;
+
+    // 筛选条件 -> 订单总数
+    private final Map<String, CachedCount> countCache = new LinkedHashMap<String, CachedCount>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedCount> eldest) {
+            return size() > countCacheMaxSize;
+        }
+    };
+
     @Override
     @Transactional
     public ExchangeOrder createOrder(Long userId, List<OrderItemRequest> items, String receiverName, String receiverPhone, String receiverAddress, String remark) {
@@ -50,53 +78,79 @@ public class ExchangeOrderServiceImpl implements ExchangeOrderService {
             throw new RuntimeException("用户不存在");
         }
 
-        // 2. 计算总积分并验证商品
-        int totalPoints = 0;
-        List<ExchangeOrderItem> orderItems = new ArrayList<>();
-        
+        // 2. 批量查询商品，按商品汇总购买数量
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
         for (OrderItemRequest itemRequest : items) {
-            ProductInfo product = productMapper.selectById(itemRequest.getProductId());
+            if (itemRequest.getProductId() == null || itemRequest.getQuantity() == null || itemRequest.getQuantity() <= 0) {
+                throw new RuntimeException("商品或数量不合法");
+            }
+            quantities.merge(itemRequest.getProductId(), itemRequest.getQuantity(), Integer::sum);
+        }
+        Map<Integer, ProductInfo> products = new HashMap<>();
+        for (ProductInfo product : productMapper.selectByIds(quantities.keySet())) {
+            products.put(product.getId(), product);
+        }
+
+        // 3. 验证商品状态与限购，限购商品的已兑换数量一次查询
+        List<Integer> limitedIds = new ArrayList<>();
+        for (Integer productId : quantities.keySet()) {
+            ProductInfo product = products.get(productId);
             if (product == null) {
-                throw new RuntimeException("商品不存在: " + itemRequest.getProductId());
+                throw new RuntimeException("商品不存在: " + productId);
             }
             if (product.getStatus() != 1) {
                 throw new RuntimeException("商品已下架: " + product.getName());
             }
-            if (product.getStock() < itemRequest.getQuantity()) {
-                throw new RuntimeException("商品库存不足: " + product.getName());
-            }
-            
-            // 检查限购
             if (product.getLimitPerUser() > 0) {
-                int userExchangeCount = productMapper.selectUserExchangeCount(userId, product.getId());
-                if (userExchangeCount + itemRequest.getQuantity() > product.getLimitPerUser()) {
+                limitedIds.add(productId);
+            }
+        }
+        if (!limitedIds.isEmpty()) {
+            Map<Integer, Integer> exchanged = new HashMap<>();
+            for (ExchangeOrderItem count : productMapper.selectUserExchangeCounts(userId, limitedIds)) {
+                exchanged.put(count.getProductId(), count.getQuantity());
+            }
+            for (Integer productId : limitedIds) {
+                ProductInfo product = products.get(productId);
+                if (exchanged.getOrDefault(productId, 0) + quantities.get(productId) > product.getLimitPerUser()) {
                     throw new RuntimeException("超过限购数量: " + product.getName() + "，限购" + product.getLimitPerUser() + "件");
                 }
             }
-            
+        }
+
+        // 4. 计算总积分并生成订单明细
+        int totalPoints = 0;
+        List<ExchangeOrderItem> orderItems = new ArrayList<>();
+        // 订单与全部明细的ID一次预留：第一个给订单，其余按顺序给明细
+        long[] ids = snowflakeIdGenerator.nextIds(items.size() + 1);
+        int idIndex = 1;
+        Long orderId = ids[0];
+        Date now = new Date();
+
+        for (OrderItemRequest itemRequest : items) {
+            ProductInfo product = products.get(itemRequest.getProductId());
             int subtotal = product.getPointsPrice() * itemRequest.getQuantity();
             totalPoints += subtotal;
-            
-            // 创建订单项
+
             ExchangeOrderItem item = new ExchangeOrderItem();
-            item.setId(snowflakeIdGenerator.nextId());
+            item.setId(ids[idIndex++]);
+            item.setOrderId(orderId);
             item.setProductId(product.getId());
             item.setProductName(product.getName());
             item.setProductImage(product.getImage());
             item.setPointsPrice(product.getPointsPrice());
             item.setQuantity(itemRequest.getQuantity());
             item.setSubtotalPoints(subtotal);
-            item.setCreateTime(new Date());
+            item.setCreateTime(now);
             orderItems.add(item);
         }
 
-        // 3. 检查用户积分
+        // 5. 检查用户积分
         if (user.getPoints() < totalPoints) {
             throw new RuntimeException("积分不足，需要" + totalPoints + "积分，当前拥有" + user.getPoints() + "积分");
         }
 
-        // 4. 创建订单
-        Long orderId = snowflakeIdGenerator.nextId();
+        // 6. 创建订单及明细
         String orderNo = "EX" + System.currentTimeMillis() + String.format("%04d", (int)(Math.random() * 10000));
         
         ExchangeOrder order = new ExchangeOrder();
@@ -109,38 +163,36 @@ public class ExchangeOrderServiceImpl implements ExchangeOrderService {
         order.setReceiverPhone(receiverPhone);
         order.setReceiverAddress(receiverAddress);
         order.setRemark(remark);
-        order.setCreateTime(new Date());
-        order.setUpdateTime(new Date());
+        order.setCreateTime(now);
+        order.setUpdateTime(now);
         
         orderMapper.insert(order);
+        orderItemMapper.insertBatch(orderItems);
 
-        // 5. 创建订单明细
-        for (ExchangeOrderItem item : orderItems) {
-            item.setOrderId(orderId);
-            orderItemMapper.insert(item);
-            
-            // 扣减库存
-            productMapper.updateStock(item.getProductId(), item.getQuantity());
+        // 7. 一次预扣全部商品库存（事务回滚时自动归还）
+        Integer insufficientId = stockReservationService.reserve(quantities);
+        if (insufficientId != null) {
+            ProductInfo product = products.get(insufficientId);
+            throw new RuntimeException(product != null ? "商品库存不足: " + product.getName() : "商品库存不足");
         }
 
-        // 6. 扣减用户积分
-        userMapper.updatePoints(userId, -totalPoints);
+        // 8. 扣减用户积分（条件扣减，余额不足时整个订单回滚）
+        pointsLedgerService.debit(userId, totalPoints, PointsTransaction.TYPE_EXCHANGE, orderId, orderNo);
 
-        // 7. 返回完整订单信息
-        return getOrderById(orderId);
+        // 9. 返回完整订单信息
+        order.setUserNickname(user.getNickname());
+        order.setItems(orderItems);
+        return order;
     }
 
     @Override
     public Map<String, Object> getOrderList(Long userId, Integer status, String keyword, Integer page, Integer pageSize) {
         int offset = (page - 1) * pageSize;
         List<ExchangeOrder> orderList = orderMapper.selectList(userId, status, keyword, offset, pageSize);
-        int total = orderMapper.selectCount(userId, status, keyword);
+        int total = countOrders(userId, status, keyword);
 
         // 加载订单明细
-        for (ExchangeOrder order : orderList) {
-            List<ExchangeOrderItem> items = orderItemMapper.selectByOrderId(order.getId());
-            order.setItems(items);
-        }
+        loadItems(orderList);
 
         Map<String, Object> result = new HashMap<>();
         result.put("list", orderList);
@@ -149,6 +201,92 @@ public class ExchangeOrderServiceImpl implements ExchangeOrderService {
         return result;
     }
 
+    @Override
+    public Map<String, Object> getOrderListByCursor(Long userId, Integer status, String keyword, String cursor, Integer pageSize, boolean withTotal) {
+        if (pageSize == null || pageSize < 1) {
+            pageSize = 10;
+        }
+        CursorUtil.Cursor position = CursorUtil.decode(cursor);
+        Date cursorTime = position != null ? position.getCreateTime() : null;
+        Long cursorId = position != null ? position.getId() : null;
+        // 多取一条用于判断是否还有下一页
+        List<ExchangeOrder> orderList = orderMapper.selectListAfterCursor(userId, status, keyword, cursorTime, cursorId, pageSize + 1);
+
+        boolean hasMore = orderList.size() > pageSize;
+        if (hasMore) {
+            orderList = orderList.subList(0, pageSize);
+        }
+        String nextCursor = null;
+        if (hasMore) {
+            ExchangeOrder last = orderList.get(orderList.size() - 1);
+            nextCursor = CursorUtil.encode(last.getCreateTime(), last.getId());
+        }
+
+        // 加载订单明细
+        loadItems(orderList);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("list", orderList);
+        result.put("items", orderList);
+        result.put("hasMore", hasMore);
+        result.put("nextCursor", nextCursor);
+        if (withTotal) {
+            result.put("total", countOrders(userId, status, keyword));
+        }
+        return result;
+    }
+
+    /**
+     * 一次查询加载当前页全部订单的明细
+     */
+    private void loadItems(List<ExchangeOrder> orderList) {
+        if (orderList.isEmpty()) {
+            return;
+        }
+        Map<Long, List<ExchangeOrderItem>> itemsByOrder = new HashMap<>();
+        for (ExchangeOrder order : orderList) {
+            itemsByOrder.put(order.getId(), new ArrayList<>());
+        }
+        for (ExchangeOrderItem item : orderItemMapper.selectByOrderIds(itemsByOrder.keySet())) {
+            itemsByOrder.get(item.getOrderId()).add(item);
+        }
+        for (ExchangeOrder order : orderList) {
+            order.setItems(itemsByOrder.get(order.getId()));
+        }
+    }
+
+    /**
+     * 查询订单总数：单个用户的订单数直接查询，全部订单（管理后台）的总数走短期缓存
+     */
+    private int countOrders(Long userId, Integer status, String keyword) {
+        if (userId != null) {
+            return orderMapper.selectCount(userId, status, keyword);
+        }
+        String key = status + ":" + (keyword != null ? keyword : "");
+        long now = System.currentTimeMillis();
+        synchronized (countCache) {
+            CachedCount cached = countCache.get(key);
+            if (cached != null && cached.expireAt > now) {
+                return cached.count;
+            }
+        }
+        int count = orderMapper.selectCount(null, status, keyword);
+        synchronized (countCache) {
+            countCache.put(key, new CachedCount(count, now + countCacheTtlMillis));
+        }
+        return count;
+    }
+
+    private static class CachedCount {
+        private final int count;
+        private final long expireAt;
+
+        CachedCount(int count, long expireAt) {
+            this.count = count;
+            this.expireAt = expireAt;
+        }
+    }
+
     @Override
     public ExchangeOrder getOrderById(Long id) {
         ExchangeOrder order = orderMapper.selectById(id);
@@ -208,24 +346,20 @@ public class ExchangeOrderServiceImpl implements ExchangeOrderService {
             throw new RuntimeException("只能取消待发货的订单");
         }
 
-        // 恢复库存
-        List<ExchangeOrderItem> items = orderItemMapper.selectByOrderId(id);
-        for (ExchangeOrderItem item : items) {
-            ProductInfo product = productMapper.selectById(item.getProductId());
-            if (product != null) {
-                product.setStock(product.getStock() + item.getQuantity());
-                product.setUpdateTime(new Date());
-                productMapper.update(product);
-            }
+        // 先按状态条件更新，并发重复取消时只有一次成功
+        if (orderMapper.updateStatusFrom(id, 0, 3, new Date()) == 0) {
+            throw new RuntimeException("只能取消待发货的订单");
         }
 
-        // 退还积分
-        userMapper.updatePoints(userId, order.getTotalPoints());
+        // 归还库存（与尚未写回的扣减相互抵消）
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
+        for (ExchangeOrderItem item : orderItemMapper.selectByOrderId(id)) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        stockReservationService.release(quantities);
 
-        // 更新订单状态
-        order.setStatus(3); // 已取消
-        order.setUpdateTime(new Date());
-        return orderMapper.update(order) > 0;
+        // 退还积分（按订单记账，重复取消不会重复退还）
+        pointsLedgerService.credit(userId, order.getTotalPoints(), PointsTransaction.TYPE_EXCHANGE_REFUND, id, order.getOrderNo());
+        return true;
     }
 }
-
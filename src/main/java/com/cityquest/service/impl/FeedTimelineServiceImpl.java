@@ -0,0 +1,189 @@
+package com.cityquest.service.impl;
+
+import com.cityquest.entity.UserFeedInfo;
+import com.cityquest.mapper.FeedMapper;
+import com.cityquest.mapper.FriendshipMapper;
+import com.cityquest.service.FeedTimelineService;
+import com.cityquest.util.TransactionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * 好友动态时间线服务实现
+ * 收件箱为 Redis 有序集合，成员为动态ID、分值同为动态ID；分值为0的哨兵成员表示收件箱已构建
+ */
+@Service
+public class FeedTimelineServiceImpl implements FeedTimelineService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeedTimelineServiceImpl.class);
+
+    private static final String INBOX_KEY_PREFIX = "feed_inbox:";
+    private static final String CELEBRITIES_KEY = "feed_celebrities";
+    private static final String SENTINEL = "0";
+
+    // 仅向已构建的收件箱追加，并裁剪到上限（保留哨兵）
+    private static final String PUSH_SCRIPT =
+            "if redis.call('EXISTS', KEYS[1]) == 1 then " +
+            "  redis.call('ZADD', KEYS[1], ARGV[1], ARGV[1]) " +
+            "  redis.call('ZREMRANGEBYRANK', KEYS[1], 1, -(tonumber(ARGV[2]) + 1)) " +
+            "end " +
+            "return 0";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private FeedMapper feedMapper;
+
+    @Autowired
+    private FriendshipMapper friendshipMapper;
+
+    // 每个收件箱最多保留的动态数
+    @Value("${feed.timeline.inbox-size:800}")
+    private int inboxSize;
+
+    // 粉丝数超过该值的用户不做写扩散
+    @Value("${feed.timeline.celebrity-threshold:5000}")
+    private int celebrityThreshold;
+
+    // 收件箱空闲过期时间（毫秒）
+    @Value("${feed.timeline.inbox-ttl:604800000}")
+    private long inboxTtlMillis;
+
+    @Override
+    public void onFeedPublished(UserFeedInfo feed) {
+        if (feed == null || feed.getId() == null || feed.getUserId() == null) {
+            return;
+        }
+        TransactionUtil.afterCommit(() -> {
+            try {
+                fanOut(feed);
+            } catch (Exception e) {
+                // 推送失败不影响发布，收件箱过期后会从数据库重建
+                logger.warn("Failed to fan out feed {} to followers", feed.getId(), e);
+            }
+        });
+    }
+
+    @Override
+    public void onFollowChanged(Long followerId) {
+        if (followerId == null) {
+            return;
+        }
+        TransactionUtil.afterCommit(() -> {
+            try {
+                stringRedisTemplate.delete(INBOX_KEY_PREFIX + followerId);
+            } catch (Exception e) {
+                logger.warn("Failed to invalidate feed inbox of user {}", followerId, e);
+            }
+        });
+    }
+
+    @Override
+    public List<Integer> getFriendFeedIds(Long userId, Long beforeId, int limit) {
+        if (userId == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        try {
+            String key = INBOX_KEY_PREFIX + userId;
+            if (stringRedisTemplate.opsForZSet().score(key, SENTINEL) == null) {
+                rebuildInbox(userId, key);
+            } else {
+                stringRedisTemplate.expire(key, Duration.ofMillis(inboxTtlMillis));
+            }
+
+            double max = beforeId != null ? beforeId - 1 : Double.MAX_VALUE;
+            Set<String> members = stringRedisTemplate.opsForZSet().reverseRangeByScore(key, 1, max, 0, limit);
+            TreeSet<Integer> ids = new TreeSet<>(Collections.reverseOrder());
+            if (members != null) {
+                for (String member : members) {
+                    ids.add(Integer.valueOf(member));
+                }
+            }
+
+            Long size = stringRedisTemplate.opsForZSet().zCard(key);
+            boolean truncated = size != null && size - 1 >= inboxSize;
+            if (ids.size() < limit && truncated) {
+                // 已翻过收件箱保留的深度
+                return null;
+            }
+
+            ids.addAll(getCelebrityFeedIds(userId, beforeId, limit));
+            return ids.stream().limit(limit).collect(Collectors.toList());
+        } catch (Exception e) {
+            logger.warn("Feed inbox of user {} unavailable, falling back to database", userId, e);
+            return null;
+        }
+    }
+
+    private void fanOut(UserFeedInfo feed) {
+        Long authorId = feed.getUserId();
+        int followerCount = friendshipMapper.selectFollowerCount(authorId);
+        if (followerCount > celebrityThreshold) {
+            // 标记后保持不变：此前已推送的动态仍在收件箱中，读取时按ID去重
+            stringRedisTemplate.opsForSet().add(CELEBRITIES_KEY, String.valueOf(authorId));
+            return;
+        }
+        List<Long> followerIds = friendshipMapper.selectFollowerIds(authorId);
+        if (followerIds.isEmpty()) {
+            return;
+        }
+        String feedId = String.valueOf(feed.getId());
+        String size = String.valueOf(inboxSize);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (Long followerId : followerIds) {
+                conn.eval(PUSH_SCRIPT, ReturnType.INTEGER, 1, INBOX_KEY_PREFIX + followerId, feedId, size);
+            }
+            return null;
+        });
+    }
+
+    private void rebuildInbox(Long userId, String key) {
+        List<Integer> feedIds = feedMapper.selectFriendFeedIds(userId, inboxSize);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.del(key);
+            conn.zAdd(key, 0, SENTINEL);
+            for (Integer feedId : feedIds) {
+                conn.zAdd(key, feedId, String.valueOf(feedId));
+            }
+            conn.pExpire(key, inboxTtlMillis);
+            return null;
+        });
+    }
+
+    /**
+     * 读扩散：合并用户关注的大V的最新动态
+     */
+    private List<Integer> getCelebrityFeedIds(Long userId, Long beforeId, int limit) {
+        Set<String> celebrities = stringRedisTemplate.opsForSet().members(CELEBRITIES_KEY);
+        if (celebrities == null || celebrities.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> candidateIds = new ArrayList<>(celebrities.size());
+        for (String celebrity : celebrities) {
+            candidateIds.add(Long.valueOf(celebrity));
+        }
+        List<Long> followed = friendshipMapper.selectFolloweeIdsIn(userId, candidateIds);
+        if (followed.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return feedMapper.selectIdsByUserIds(followed, beforeId, limit);
+    }
+}
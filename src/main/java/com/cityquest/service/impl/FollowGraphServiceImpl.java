@@ -0,0 +1,304 @@
+package com.cityquest.service.impl;
+
+import com.cityquest.entity.FriendshipInfo;
+import com.cityquest.mapper.FriendshipMapper;
+import com.cityquest.service.FollowGraphService;
+import com.cityquest.service.OnlineUserService;
+import com.cityquest.util.LongHashSet;
+import com.cityquest.util.TransactionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 关注关系图服务实现
+ * 按关注者懒加载关注集合，总边数超过上限时淘汰最久未访问的用户；
+ * 关注数超过单用户上限的用户不缓存，直接查询数据库；
+ * 每个集合有有效期，到期后重新加载，兜底其他节点的变更通知丢失
+ */
+@Service
+public class FollowGraphServiceImpl implements FollowGraphService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FollowGraphServiceImpl.class);
+
+    private static final String INVALIDATE_CHANNEL = "follow_graph_invalidate";
+    private static final int WARMUP_CHUNK_SIZE = 200;
+
+    // 关注数超出上限的用户占位，表示需查询数据库
+    private static final LongHashSet OVERSIZED = new LongHashSet(0);
+
+    @Autowired
+    private FriendshipMapper friendshipMapper;
+
+    @Autowired
+    private OnlineUserService onlineUserService;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    // 内存中最多保留的关注关系条数
+    @Value("${social.follow-graph.max-edges:2000000}")
+    private long maxEdges;
+
+    // 单个用户最多缓存的关注数
+    @Value("${social.follow-graph.max-following:5000}")
+    private int maxFollowing;
+
+    // 启动时最多预热的在线用户数
+    @Value("${social.follow-graph.warmup-users:5000}")
+    private int warmupUsers;
+
+    // 关注集合有效期（毫秒）
+    @Value("${social.follow-graph.ttl:300000}")
+    private long ttlMillis;
+
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "");
+
+    // 关注者ID -> 关注集合，按访问顺序淘汰
+    private final LinkedHashMap<Long, Entry> following = new LinkedHashMap<>(16, 0.75f, true);
+    private long edgeCount;
+
+    // 正在加载的关注者ID -> 本次加载的标记，加载期间该用户的关系有变更时移除，加载结果不再写入缓存
+    private final Map<Long, Object> loading = new HashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder databaseProbes = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        MessageListener listener = (message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            int separator = body.indexOf(':');
+            if (separator < 0 || body.substring(0, separator).equals(nodeId)) {
+                return;
+            }
+            try {
+                evictLocal(Long.valueOf(body.substring(separator + 1)));
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring malformed follow graph invalidation message");
+            }
+        };
+        redisMessageListenerContainer.addMessageListener(listener, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 启动后预热在线用户的关注集合
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            List<Long> userIds = new ArrayList<>();
+            for (String id : onlineUserService.getOnlineUserIds()) {
+                if (userIds.size() >= warmupUsers) {
+                    break;
+                }
+                try {
+                    userIds.add(Long.valueOf(id));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            for (int from = 0; from < userIds.size(); from += WARMUP_CHUNK_SIZE) {
+                loadChunk(userIds.subList(from, Math.min(from + WARMUP_CHUNK_SIZE, userIds.size())));
+            }
+            logger.info("Follow graph warmed up for {} online users", userIds.size());
+        } catch (Exception e) {
+            logger.warn("Failed to warm up follow graph", e);
+        }
+    }
+
+    @Override
+    public boolean isFollowing(Long followerId, Long followeeId) {
+        if (followerId == null || followeeId == null) {
+            return false;
+        }
+        LongHashSet followees = getOrLoad(followerId);
+        if (followees == OVERSIZED) {
+            databaseProbes.increment();
+            return friendshipMapper.checkFollow(followerId, followeeId) > 0;
+        }
+        synchronized (followees) {
+            return followees.contains(followeeId);
+        }
+    }
+
+    @Override
+    public boolean isMutualFollow(Long userId, Long targetUserId) {
+        return isFollowing(userId, targetUserId) && isFollowing(targetUserId, userId);
+    }
+
+    @Override
+    public void onFollowChanged(Long followerId, Long followeeId, boolean follow) {
+        if (followerId == null || followeeId == null) {
+            return;
+        }
+        TransactionUtil.afterCommit(() -> {
+            applyLocal(followerId, followeeId, follow);
+            try {
+                stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, nodeId + ":" + followerId);
+            } catch (Exception e) {
+                logger.warn("Failed to broadcast follow graph change for user {}", followerId, e);
+            }
+        });
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (following) {
+            stats.put("users", following.size());
+            stats.put("edges", edgeCount);
+        }
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("databaseProbes", databaseProbes.sum());
+        return stats;
+    }
+
+    private LongHashSet getOrLoad(Long followerId) {
+        Object token = new Object();
+        synchronized (following) {
+            Entry entry = following.get(followerId);
+            if (entry != null) {
+                if (entry.expireAt > System.currentTimeMillis()) {
+                    hits.increment();
+                    return entry.followees;
+                }
+                following.remove(followerId);
+                edgeCount -= entry.followees.size();
+            }
+            loading.put(followerId, token);
+        }
+        misses.increment();
+
+        try {
+            List<Long> ids = friendshipMapper.selectFolloweeIds(followerId, maxFollowing + 1);
+            LongHashSet followees = toSet(ids);
+            cache(followerId, followees, token);
+            return followees;
+        } finally {
+            release(followerId, token);
+        }
+    }
+
+    private void loadChunk(List<Long> followerIds) {
+        Map<Long, Object> tokens = new HashMap<>();
+        Map<Long, List<Long>> grouped = new HashMap<>();
+        synchronized (following) {
+            for (Long followerId : followerIds) {
+                Object token = new Object();
+                loading.put(followerId, token);
+                tokens.put(followerId, token);
+                grouped.put(followerId, new ArrayList<>());
+            }
+        }
+        try {
+            for (FriendshipInfo friendship : friendshipMapper.selectByFollowerIds(followerIds)) {
+                grouped.get(friendship.getFollowerId()).add(friendship.getFolloweeId());
+            }
+            for (Map.Entry<Long, List<Long>> entry : grouped.entrySet()) {
+                cache(entry.getKey(), toSet(entry.getValue()), tokens.get(entry.getKey()));
+            }
+        } finally {
+            for (Map.Entry<Long, Object> entry : tokens.entrySet()) {
+                release(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private LongHashSet toSet(List<Long> ids) {
+        if (ids.size() > maxFollowing) {
+            return OVERSIZED;
+        }
+        LongHashSet followees = new LongHashSet(ids.size());
+        for (Long id : ids) {
+            followees.add(id);
+        }
+        return followees;
+    }
+
+    private void cache(Long followerId, LongHashSet followees, Object token) {
+        synchronized (following) {
+            // 加载期间该用户的关系有变更，结果可能已过期，不写入缓存
+            if (loading.get(followerId) != token || following.containsKey(followerId)) {
+                return;
+            }
+            following.put(followerId, new Entry(followees, System.currentTimeMillis() + ttlMillis));
+            edgeCount += followees.size();
+            Iterator<Map.Entry<Long, Entry>> iterator = following.entrySet().iterator();
+            while (edgeCount > maxEdges && iterator.hasNext()) {
+                edgeCount -= iterator.next().getValue().followees.size();
+                iterator.remove();
+            }
+        }
+    }
+
+    private void release(Long followerId, Object token) {
+        synchronized (following) {
+            loading.remove(followerId, token);
+        }
+    }
+
+    private void applyLocal(Long followerId, Long followeeId, boolean follow) {
+        synchronized (following) {
+            loading.remove(followerId);
+            Entry entry = following.get(followerId);
+            if (entry == null || entry.followees == OVERSIZED) {
+                return;
+            }
+            LongHashSet followees = entry.followees;
+            synchronized (followees) {
+                boolean changed = follow ? followees.add(followeeId) : followees.remove(followeeId);
+                if (changed) {
+                    edgeCount += follow ? 1 : -1;
+                }
+                if (followees.size() > maxFollowing) {
+                    following.put(followerId, new Entry(OVERSIZED, entry.expireAt));
+                    edgeCount -= followees.size();
+                }
+            }
+        }
+    }
+
+    private void evictLocal(Long followerId) {
+        synchronized (following) {
+            loading.remove(followerId);
+            Entry removed = following.remove(followerId);
+            if (removed != null) {
+                edgeCount -= removed.followees.size();
+            }
+        }
+    }
+
+    private static class Entry {
+        final LongHashSet followees;
+        final long expireAt;
+
+        Entry(LongHashSet followees, long expireAt) {
+            this.followees = followees;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.cityquest.service.impl;
 
+import com.cityquest.service.AuthPrincipalCacheService;
 import com.cityquest.service.OnlineUserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.StringRedisTemplate;
@@ -27,6 +28,9 @@ public class OnlineUserServiceImpl implements OnlineUserService {
     @Autowired
     private StringRedisTemplate stringRedisTemplate;
 
+    @Autowired
+    private AuthPrincipalCacheService authPrincipalCacheService;
+
     @Override
     public void markOnline(Long userId, String token) {
         if (userId == null) {
@@ -44,6 +48,8 @@ public class OnlineUserServiceImpl implements OnlineUserService {
             stringRedisTemplate.expire(key, SESSION_TTL);
         }
         clearForceLogoutMark(userId);
+        // 新会话替换旧会话，旧token需重新校验
+        authPrincipalCacheService.invalidateUser(userId);
     }
 
     @Override
@@ -55,6 +61,7 @@ public class OnlineUserServiceImpl implements OnlineUserService {
         stringRedisTemplate.opsForSet().remove(ONLINE_USERS_KEY, userIdStr);
         stringRedisTemplate.delete(USER_SESSION_KEY_PREFIX + userIdStr);
         clearForceLogoutMark(userId);
+        authPrincipalCacheService.invalidateUser(userId);
     }
 
     @Override
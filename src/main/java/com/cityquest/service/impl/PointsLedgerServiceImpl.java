@@ -0,0 +1,121 @@
+package com.cityquest.service.impl;
+
+import com.cityquest.entity.PointsTransaction;
+import com.cityquest.mapper.PointsTransactionMapper;
+import com.cityquest.mapper.UserMapper;
+import com.cityquest.service.PointsLedgerService;
+import com.cityquest.util.SnowflakeIdGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 积分账本服务实现
+ * 扣减按用户分段加锁并持有到事务结束，同一热点用户的并发扣减在JVM内排队，
+ * 避免在 user_info 行锁上长时间等待；余额校验由条件更新 points >= ? 保证
+ */
+@Service
+public class PointsLedgerServiceImpl implements PointsLedgerService {
+
+    @Autowired
+    private PointsTransactionMapper pointsTransactionMapper;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private SnowflakeIdGenerator snowflakeIdGenerator;
+
+    // 分段锁数量
+    @Value("${points.ledger.lock-stripes:1024}")
+    private int lockStripes;
+
+    // 等待分段锁的最长时间（毫秒）
+    @Value("${points.ledger.lock-timeout:3000}")
+    private long lockTimeoutMillis;
+
+    private ReentrantLock[] locks;
+
+    @PostConstruct
+    public void init() {
+        locks = new ReentrantLock[lockStripes];
+        for (int i = 0; i < lockStripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    @Transactional
+    public boolean credit(Long userId, int amount, String type, Long bizId, String remark) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("增加的积分必须大于0");
+        }
+        if (!record(userId, amount, type, bizId, remark)) {
+            return false;
+        }
+        if (userMapper.updatePoints(userId, amount) <= 0) {
+            throw new RuntimeException("用户不存在");
+        }
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public boolean debit(Long userId, int amount, String type, Long bizId, String remark) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("扣减的积分必须大于0");
+        }
+        lockUntilCompletion(userId);
+        if (!record(userId, -amount, type, bizId, remark)) {
+            return false;
+        }
+        if (userMapper.debitPoints(userId, amount) <= 0) {
+            throw new RuntimeException("积分不足，需要" + amount + "积分");
+        }
+        return true;
+    }
+
+    private boolean record(Long userId, int amount, String type, Long bizId, String remark) {
+        if (userId == null) {
+            throw new IllegalArgumentException("用户ID不能为空");
+        }
+        PointsTransaction transaction = new PointsTransaction();
+        transaction.setId(snowflakeIdGenerator.nextId());
+        transaction.setUserId(userId);
+        transaction.setAmount(amount);
+        transaction.setType(type);
+        transaction.setBizId(bizId);
+        transaction.setRemark(remark);
+        transaction.setCreateTime(new Date());
+        return pointsTransactionMapper.insertIgnore(transaction) > 0;
+    }
+
+    /**
+     * 获取用户所在分段的锁，事务结束（提交或回滚）后释放
+     */
+    private void lockUntilCompletion(Long userId) {
+        ReentrantLock lock = locks[Math.floorMod(Long.hashCode(userId * 0x9E3779B97F4A7C15L), locks.length)];
+        try {
+            if (!lock.tryLock(lockTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("积分操作繁忙，请稍后重试");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("积分操作被中断");
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+    }
+}
@@ -2,6 +2,7 @@ package com.cityquest.service.impl;
 
 import com.cityquest.entity.ProductCategory;
 import com.cityquest.mapper.ProductCategoryMapper;
+import com.cityquest.service.CatalogCacheService;
 import com.cityquest.service.ProductCategoryService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -18,9 +19,12 @@ public class ProductCategoryServiceImpl implements ProductCategoryService {
     @Autowired
     private ProductCategoryMapper categoryMapper;
 
+    @Autowired
+    private CatalogCacheService catalogCacheService;
+
     @Override
     public List<ProductCategory> getAllCategories(Integer status) {
-        return categoryMapper.selectAll(status);
+        return catalogCacheService.getCategories(status);
     }
 
     @Override
@@ -38,18 +42,30 @@ public class ProductCategoryServiceImpl implements ProductCategoryService {
         }
         category.setCreateTime(new Date());
         category.setUpdateTime(new Date());
-        return categoryMapper.insert(category) > 0;
+        boolean created = categoryMapper.insert(category) > 0;
+        if (created) {
+            catalogCacheService.onCategoryChanged();
+        }
+        return created;
     }
 
     @Override
     public boolean updateCategory(ProductCategory category) {
         category.setUpdateTime(new Date());
-        return categoryMapper.update(category) > 0;
+        boolean updated = categoryMapper.update(category) > 0;
+        if (updated) {
+            catalogCacheService.onCategoryChanged();
+        }
+        return updated;
     }
 
     @Override
     public boolean deleteCategory(Integer id) {
-        return categoryMapper.delete(id) > 0;
+        boolean deleted = categoryMapper.delete(id) > 0;
+        if (deleted) {
+            catalogCacheService.onCategoryChanged();
+        }
+        return deleted;
     }
 }
 
@@ -2,13 +2,13 @@ package com.cityquest.service.impl;
 
 import com.cityquest.entity.ProductInfo;
 import com.cityquest.mapper.ProductMapper;
+import com.cityquest.service.CatalogCacheService;
 import com.cityquest.service.ProductService;
+import com.cityquest.service.StockReservationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -20,22 +20,20 @@ public class ProductServiceImpl implements ProductService {
     @Autowired
     private ProductMapper productMapper;
 
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private CatalogCacheService catalogCacheService;
+
     @Override
     public Map<String, Object> getProductList(Integer categoryId, Integer status, String keyword, Integer page, Integer pageSize) {
-        int offset = (page - 1) * pageSize;
-        List<ProductInfo> productList = productMapper.selectList(categoryId, status, keyword, offset, pageSize);
-        int total = productMapper.selectCount(categoryId, status, keyword);
-
-        Map<String, Object> result = new HashMap<>();
-        result.put("list", productList);
-        result.put("items", productList);
-        result.put("total", total);
-        return result;
+        return catalogCacheService.getProductPage(categoryId, status, keyword, page, pageSize);
     }
 
     @Override
     public ProductInfo getProductById(Integer id) {
-        return productMapper.selectById(id);
+        return catalogCacheService.getProduct(id);
     }
 
     @Override
@@ -51,18 +49,35 @@ public class ProductServiceImpl implements ProductService {
         }
         product.setCreateTime(new Date());
         product.setUpdateTime(new Date());
-        return productMapper.insert(product) > 0;
+        boolean created = productMapper.insert(product) > 0;
+        if (created) {
+            catalogCacheService.onProductChanged();
+        }
+        return created;
     }
 
     @Override
     public boolean updateProduct(ProductInfo product) {
         product.setUpdateTime(new Date());
-        return productMapper.update(product) > 0;
+        boolean updated = productMapper.update(product) > 0;
+        if (updated) {
+            catalogCacheService.onProductChanged();
+            if (product.getStock() != null) {
+                // 以管理员设置的库存覆盖计数器，之后的写回以计数器为准
+                stockReservationService.setStock(product.getId(), product.getStock());
+            }
+        }
+        return updated;
     }
 
     @Override
     public boolean deleteProduct(Integer id) {
-        return productMapper.delete(id) > 0;
+        boolean deleted = productMapper.delete(id) > 0;
+        if (deleted) {
+            catalogCacheService.onProductChanged();
+            stockReservationService.reset(id);
+        }
+        return deleted;
     }
 
     @Override
@@ -71,7 +86,11 @@ public class ProductServiceImpl implements ProductService {
         product.setId(id);
         product.setStatus(status);
         product.setUpdateTime(new Date());
-        return productMapper.update(product) > 0;
+        boolean updated = productMapper.update(product) > 0;
+        if (updated) {
+            catalogCacheService.onProductChanged();
+        }
+        return updated;
     }
 }
 
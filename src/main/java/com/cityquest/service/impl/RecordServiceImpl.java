@@ -1,13 +1,17 @@
 package com.cityquest.service.impl;
 
 import com.cityquest.entity.NotificationInfo;
+import com.cityquest.entity.PointsTransaction;
 import com.cityquest.entity.RecordInfo;
 import com.cityquest.entity.TaskInfo;
 import com.cityquest.mapper.RecordMapper;
 import com.cityquest.mapper.TaskMapper;
-import com.cityquest.mapper.UserMapper;
 import com.cityquest.mapper.NotificationMapper;
+import com.cityquest.service.PointsLedgerService;
 import com.cityquest.service.RecordService;
+import com.cityquest.service.TaskCompletionCacheService;
+import com.cityquest.service.TaskCompletionCounterService;
+import com.cityquest.service.UserSummaryCacheService;
 import com.cityquest.util.DistanceUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -31,10 +35,19 @@ public class RecordServiceImpl implements RecordService {
     private TaskMapper taskMapper;
 
     @Autowired
-    private UserMapper userMapper;
+    private NotificationMapper notificationMapper;
 
     @Autowired
-    private NotificationMapper notificationMapper;
+    private TaskCompletionCounterService taskCompletionCounterService;
+
+    @Autowired
+    private TaskCompletionCacheService taskCompletionCacheService;
+
+    @Autowired
+    private UserSummaryCacheService userSummaryCacheService;
+
+    @Autowired
+    private PointsLedgerService pointsLedgerService;
 
     @Override
     @Transactional
@@ -47,7 +60,7 @@ public class RecordServiceImpl implements RecordService {
         try {
             Long userId = recordInfo.getUserId();
             System.out.println("RecordService - 准备查询用户，userId: " + userId + " (类型: " + (userId != null ? userId.getClass().getSimpleName() : "null") + ")");
-            com.cityquest.entity.UserInfo userInfo = userMapper.selectById(userId);
+            com.cityquest.dto.user.UserSummary userInfo = userSummaryCacheService.get(userId);
             if (userInfo == null) {
                 System.err.println("用户不存在 - userId: " + userId);
                 // 尝试直接查询数据库验证
@@ -147,12 +160,14 @@ public class RecordServiceImpl implements RecordService {
                 System.out.println("审核状态更新结果: " + auditResult);
                 
                 // 更新用户积分
-                int pointsResult = userMapper.updatePoints(recordInfo.getUserId().longValue(), taskInfo.getReward());
+                boolean pointsResult = pointsLedgerService.credit(recordInfo.getUserId().longValue(), taskInfo.getReward(),
+                        PointsTransaction.TYPE_TASK_REWARD, recordInfo.getId().longValue(), taskInfo.getTitle());
                 System.out.println("积分更新结果: " + pointsResult);
                 
-                // 更新任务完成数
-                taskMapper.updateCompletionCount(taskInfo.getId());
-                System.out.println("任务完成数已更新");
+                // 更新任务完成数（提交后批量写回）
+                taskCompletionCounterService.increment(taskInfo.getId());
+                taskCompletionCacheService.evict(recordInfo.getUserId());
+                System.out.println("任务完成数已累加");
             } else {
                 System.out.println("任务信息为空或奖励积分为0，跳过积分更新");
             }
@@ -224,17 +239,31 @@ public class RecordServiceImpl implements RecordService {
         // 获取任务信息用于通知及积分处理
         TaskInfo taskInfo = taskMapper.selectById(recordInfo.getTaskId());
         
-        // 更新审核状态
-        int result = recordMapper.updateAuditStatus(id, status, remark, adminId != null ? adminId.longValue() : null);
+        // 更新审核状态：先按条件更新判断是否跨越"已通过"，完成数只随真正的状态转换增减，重复审核不会重复计数
+        boolean approve = status == 1;
+        Long auditAdminId = adminId != null ? adminId.longValue() : null;
+        int result = recordMapper.updateAuditStatusFrom(id, status, remark, auditAdminId, !approve);
+        boolean transitioned = result > 0;
+        if (!transitioned) {
+            result = recordMapper.updateAuditStatus(id, status, remark, auditAdminId);
+        }
         
         // 如果审核通过，给用户加积分
-        if (status == 1) {
+        if (approve && taskInfo != null && taskInfo.getReward() != null && taskInfo.getReward() > 0) {
+            // 更新用户积分（按打卡记录记账，重复审核不会重复发放）
+            pointsLedgerService.credit(recordInfo.getUserId().longValue(), taskInfo.getReward(),
+                    PointsTransaction.TYPE_TASK_REWARD, id.longValue(), taskInfo.getTitle());
+        }
+        if (transitioned) {
+            // 更新任务完成数（提交后批量写回）
             if (taskInfo != null) {
-                // 更新用户积分
-                userMapper.updatePoints(recordInfo.getUserId().longValue(), taskInfo.getReward());
-                // 更新任务完成数
-                taskMapper.updateCompletionCount(taskInfo.getId());
+                if (approve) {
+                    taskCompletionCounterService.increment(taskInfo.getId());
+                } else {
+                    taskCompletionCounterService.decrement(taskInfo.getId());
+                }
             }
+            taskCompletionCacheService.evict(recordInfo.getUserId());
         }
 
         if (result > 0) {
@@ -294,7 +323,12 @@ public class RecordServiceImpl implements RecordService {
         if (record.getAuditStatus() == null || record.getAuditStatus() != 1) {
             throw new RuntimeException("仅允许删除已通过的记录");
         }
-        return recordMapper.deleteById(id) > 0;
+        boolean deleted = recordMapper.deleteById(id) > 0;
+        if (deleted) {
+            taskCompletionCounterService.decrement(record.getTaskId());
+            taskCompletionCacheService.evict(record.getUserId());
+        }
+        return deleted;
     }
 
     @Override
@@ -303,13 +337,22 @@ public class RecordServiceImpl implements RecordService {
         if (ids == null || ids.isEmpty()) return 0;
         // 过滤出已通过的记录ID
         java.util.List<Integer> approvedIds = new java.util.ArrayList<>();
+        java.util.List<RecordInfo> approvedRecords = new java.util.ArrayList<>();
         for (Integer id : ids) {
             RecordInfo r = recordMapper.selectById(id);
             if (r != null && r.getAuditStatus() != null && r.getAuditStatus() == 1) {
                 approvedIds.add(id);
+                approvedRecords.add(r);
             }
         }
         if (approvedIds.isEmpty()) return 0;
-        return recordMapper.batchDelete(approvedIds);
+        int deleted = recordMapper.batchDelete(approvedIds);
+        if (deleted > 0) {
+            for (RecordInfo r : approvedRecords) {
+                taskCompletionCounterService.decrement(r.getTaskId());
+                taskCompletionCacheService.evict(r.getUserId());
+            }
+        }
+        return deleted;
     }
 }
\ No newline at end of file
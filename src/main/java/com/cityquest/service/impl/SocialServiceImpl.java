@@ -2,7 +2,12 @@ package com.cityquest.service.impl;
 
 import com.cityquest.entity.*;
 import com.cityquest.mapper.*;
+import com.cityquest.dto.user.UserSummary;
+import com.cityquest.service.FeedTimelineService;
+import com.cityquest.service.FollowGraphService;
 import com.cityquest.service.SocialService;
+import com.cityquest.service.UserSummaryCacheService;
+import com.cityquest.util.CursorUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -33,6 +38,15 @@ public class SocialServiceImpl implements SocialService {
     @Autowired
     private UserMapper userMapper;
 
+    @Autowired
+    private FeedTimelineService feedTimelineService;
+
+    @Autowired
+    private UserSummaryCacheService userSummaryCacheService;
+
+    @Autowired
+    private FollowGraphService followGraphService;
+
     @Override
     @Transactional
     public boolean followUser(Long followerId, Long followeeId) {
@@ -41,13 +55,13 @@ public class SocialServiceImpl implements SocialService {
         }
 
         // 验证关注者是否存在
-        UserInfo follower = userMapper.selectById(followerId);
+        UserSummary follower = userSummaryCacheService.get(followerId);
         if (follower == null) {
             throw new RuntimeException("关注者用户不存在");
         }
 
         // 验证被关注者是否存在
-        UserInfo followee = userMapper.selectById(followeeId);
+        UserSummary followee = userSummaryCacheService.get(followeeId);
         if (followee == null) {
             throw new RuntimeException("被关注者用户不存在");
         }
@@ -64,6 +78,10 @@ public class SocialServiceImpl implements SocialService {
         friendshipInfo.setCreateTime(new Date());
 
         int result = friendshipMapper.insert(friendshipInfo);
+        if (result > 0) {
+            feedTimelineService.onFollowChanged(followerId);
+            followGraphService.onFollowChanged(followerId, followeeId, true);
+        }
 
         // 创建通知：被关注者收到新粉丝通知
         if (result > 0) {
@@ -80,12 +98,17 @@ public class SocialServiceImpl implements SocialService {
     @Override
     @Transactional
     public boolean unfollowUser(Long followerId, Long followeeId) {
-        return friendshipMapper.delete(followerId, followeeId) > 0;
+        boolean removed = friendshipMapper.delete(followerId, followeeId) > 0;
+        if (removed) {
+            feedTimelineService.onFollowChanged(followerId);
+            followGraphService.onFollowChanged(followerId, followeeId, false);
+        }
+        return removed;
     }
 
     @Override
     public boolean isFollowing(Long followerId, Long followeeId) {
-        return friendshipMapper.checkFollow(followerId, followeeId) > 0;
+        return followGraphService.isFollowing(followerId, followeeId);
     }
 
     @Override
@@ -95,10 +118,15 @@ public class SocialServiceImpl implements SocialService {
         int total = friendshipMapper.selectFollowingCount(userId);
 
         // 富化数据：添加用户信息
+        Set<Long> userIds = new HashSet<>();
+        for (FriendshipInfo friendship : friendships) {
+            userIds.add(friendship.getFolloweeId());
+        }
+        Map<Long, UserInfo> users = loadUsers(userIds);
         List<Map<String, Object>> enriched = new ArrayList<>();
         for (FriendshipInfo friendship : friendships) {
             Map<String, Object> item = new HashMap<>();
-            UserInfo user = userMapper.selectById(friendship.getFolloweeId());
+            UserInfo user = users.get(friendship.getFolloweeId());
             if (user != null) {
                 item.put("id", user.getId());
                 item.put("username", user.getUsername());
@@ -124,10 +152,15 @@ public class SocialServiceImpl implements SocialService {
         int total = friendshipMapper.selectFollowerCount(userId);
 
         // 富化数据：添加用户信息
+        Set<Long> userIds = new HashSet<>();
+        for (FriendshipInfo friendship : friendships) {
+            userIds.add(friendship.getFollowerId());
+        }
+        Map<Long, UserInfo> users = loadUsers(userIds);
         List<Map<String, Object>> enriched = new ArrayList<>();
         for (FriendshipInfo friendship : friendships) {
             Map<String, Object> item = new HashMap<>();
-            UserInfo user = userMapper.selectById(friendship.getFollowerId());
+            UserInfo user = users.get(friendship.getFollowerId());
             if (user != null) {
                 item.put("id", user.getId());
                 item.put("username", user.getUsername());
@@ -162,6 +195,9 @@ public class SocialServiceImpl implements SocialService {
         feedInfo.setUpdateTime(new Date());
 
         int result = feedMapper.insert(feedInfo);
+        if (result > 0) {
+            feedTimelineService.onFeedPublished(feedInfo);
+        }
 
         // 如果动态关联了任务，通知关注该用户的好友
         if (result > 0 && taskId != null) {
@@ -184,14 +220,150 @@ public class SocialServiceImpl implements SocialService {
         } else if ("friend".equals(type) && userId != null) {
             // 好友动态
             feeds = feedMapper.selectFriendFeedList(userId, offset, pageSize);
-            total = feedMapper.selectCount(null, false); // 简化处理
+            total = feedMapper.selectFriendFeedCount(userId);
         } else {
             // 公开动态（时间线）
             feeds = feedMapper.selectPublicFeedList(offset, pageSize);
             total = feedMapper.selectCount(null, true);
         }
 
-        // 富化数据：添加用户信息、点赞状态等
+        List<Map<String, Object>> enriched = buildFeedItems(feeds, userId);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("list", enriched);
+        result.put("items", enriched);
+        result.put("total", total);
+        return result;
+    }
+
+    @Override
+    public Map<String, Object> getFeedListByCursor(Long userId, String cursor, Integer pageSize, String type) {
+        if (pageSize == null || pageSize < 1) {
+            pageSize = 10;
+        }
+        CursorUtil.Cursor position = CursorUtil.decode(cursor);
+        Date cursorTime = position != null ? position.getCreateTime() : null;
+        Long cursorId = position != null ? position.getId() : null;
+        // 多取一条用于判断是否还有下一页
+        int limit = pageSize + 1;
+        List<UserFeedInfo> feeds;
+
+        if ("my".equals(type) && userId != null) {
+            feeds = feedMapper.selectByUserIdAfterCursor(userId, cursorTime, cursorId, limit);
+        } else if ("friend".equals(type) && userId != null) {
+            feeds = loadFriendFeeds(userId, cursorTime, cursorId, limit);
+        } else {
+            feeds = feedMapper.selectPublicFeedListAfterCursor(cursorTime, cursorId, limit);
+        }
+
+        boolean hasMore = feeds.size() > pageSize;
+        if (hasMore) {
+            feeds = feeds.subList(0, pageSize);
+        }
+        String nextCursor = null;
+        if (hasMore) {
+            UserFeedInfo last = feeds.get(feeds.size() - 1);
+            nextCursor = CursorUtil.encode(last.getCreateTime(), last.getId());
+        }
+
+        List<Map<String, Object>> enriched = buildFeedItems(feeds, userId);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("list", enriched);
+        result.put("items", enriched);
+        result.put("hasMore", hasMore);
+        result.put("nextCursor", nextCursor);
+        return result;
+    }
+
+    /**
+     * 批量加载完整用户信息（关注列表需要积分，不走摘要缓存）
+     */
+    private Map<Long, UserInfo> loadUsers(Collection<Long> userIds) {
+        Map<Long, UserInfo> users = new HashMap<>();
+        userIds.remove(null);
+        if (userIds.isEmpty()) {
+            return users;
+        }
+        for (UserInfo user : userMapper.selectByIds(userIds)) {
+            users.put(user.getId(), user);
+        }
+        return users;
+    }
+
+    /**
+     * 批量查询当前用户在给定动态中已点赞的动态ID
+     */
+    private Set<Integer> loadLikedFeedIds(Long userId, List<Integer> feedIds) {
+        if (userId == null || feedIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(feedLikeMapper.selectLikedFeedIds(userId, feedIds));
+    }
+
+    /**
+     * 读取游标之后的好友动态
+     * 优先读取时间线收件箱，收件箱中已删除的动态会被跳过，不足一页时继续向后读取，
+     * 避免因删除的动态提前判定没有下一页；收件箱不可用或已翻过深度时剩余部分回退到联表查询
+     */
+    private List<UserFeedInfo> loadFriendFeeds(Long userId, Date cursorTime, Long cursorId, int limit) {
+        List<UserFeedInfo> feeds = new ArrayList<>(limit);
+        Long beforeId = cursorId;
+        while (feeds.size() < limit) {
+            int remaining = limit - feeds.size();
+            List<Integer> feedIds = feedTimelineService.getFriendFeedIds(userId, beforeId, remaining);
+            if (feedIds == null) {
+                // 从最后一条已取到的动态继续，已删除的动态本就不在数据库结果中
+                UserFeedInfo last = feeds.isEmpty() ? null : feeds.get(feeds.size() - 1);
+                Date afterTime = last != null ? last.getCreateTime() : cursorTime;
+                Long afterId = last != null ? Long.valueOf(last.getId()) : cursorId;
+                feeds.addAll(feedMapper.selectFriendFeedListAfterCursor(userId, afterTime, afterId, remaining));
+                break;
+            }
+            feeds.addAll(loadFeedsInOrder(feedIds));
+            if (feedIds.size() < remaining) {
+                // 收件箱已读完
+                break;
+            }
+            beforeId = feedIds.get(feedIds.size() - 1).longValue();
+        }
+        return feeds;
+    }
+
+    /**
+     * 按给定ID顺序加载动态，已删除的动态跳过
+     */
+    private List<UserFeedInfo> loadFeedsInOrder(List<Integer> feedIds) {
+        if (feedIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Integer, UserFeedInfo> byId = new HashMap<>();
+        for (UserFeedInfo feed : feedMapper.selectByIds(feedIds)) {
+            byId.put(feed.getId(), feed);
+        }
+        List<UserFeedInfo> feeds = new ArrayList<>(feedIds.size());
+        for (Integer feedId : feedIds) {
+            UserFeedInfo feed = byId.get(feedId);
+            if (feed != null) {
+                feeds.add(feed);
+            }
+        }
+        return feeds;
+    }
+
+    /**
+     * 富化动态数据：添加用户信息、点赞状态等
+     */
+    private List<Map<String, Object>> buildFeedItems(List<UserFeedInfo> feeds, Long userId) {
+        Set<Long> authorIds = new HashSet<>();
+        List<Integer> feedIds = new ArrayList<>(feeds.size());
+        for (UserFeedInfo feed : feeds) {
+            authorIds.add(feed.getUserId());
+            feedIds.add(feed.getId());
+        }
+        Map<Long, UserSummary> users = userSummaryCacheService.getAll(authorIds);
+        Set<Integer> likedFeedIds = loadLikedFeedIds(userId, feedIds);
+
         List<Map<String, Object>> enriched = new ArrayList<>();
         for (UserFeedInfo feed : feeds) {
             Map<String, Object> item = new HashMap<>();
@@ -220,7 +392,7 @@ public class SocialServiceImpl implements SocialService {
             item.put("createTime", feed.getCreateTime());
 
             // 添加用户信息
-            UserInfo user = userMapper.selectById(feed.getUserId());
+            UserSummary user = users.get(feed.getUserId());
             if (user != null) {
                 item.put("userId", user.getId());
                 item.put("username", user.getUsername());
@@ -229,20 +401,12 @@ public class SocialServiceImpl implements SocialService {
             }
 
             // 检查当前用户是否已点赞
-            if (userId != null) {
-                item.put("isLiked", feedLikeMapper.checkLike(feed.getId(), userId) > 0);
-            } else {
-                item.put("isLiked", false);
-            }
+            item.put("isLiked", likedFeedIds.contains(feed.getId()));
 
             enriched.add(item);
         }
 
-        Map<String, Object> result = new HashMap<>();
-        result.put("list", enriched);
-        result.put("items", enriched);
-        result.put("total", total);
-        return result;
+        return enriched;
     }
 
     @Override
@@ -268,7 +432,7 @@ public class SocialServiceImpl implements SocialService {
             // 创建通知：动态作者收到点赞通知
             UserFeedInfo feed = feedMapper.selectById(feedId);
             if (feed != null && !feed.getUserId().equals(userId)) {
-                UserInfo liker = userMapper.selectById(userId);
+                UserSummary liker = userSummaryCacheService.get(userId);
                 String title = "收到点赞";
                 String message = (liker.getNickname() != null ? liker.getNickname() : liker.getUsername()) + " 赞了你的动态";
                 createNotification(feed.getUserId(), "feed_like", title, message, feedId);
@@ -310,7 +474,7 @@ public class SocialServiceImpl implements SocialService {
             // 创建通知：动态作者收到评论通知
             UserFeedInfo feed = feedMapper.selectById(feedId);
             if (feed != null && !feed.getUserId().equals(userId)) {
-                UserInfo commenter = userMapper.selectById(userId);
+                UserSummary commenter = userSummaryCacheService.get(userId);
                 String title = "收到评论";
                 String message = (commenter.getNickname() != null ? commenter.getNickname() : commenter.getUsername()) + " 评论了你的动态";
                 createNotification(feed.getUserId(), "feed_comment", title, message, feedId);
@@ -327,6 +491,11 @@ public class SocialServiceImpl implements SocialService {
         int total = feedCommentMapper.selectCount(feedId);
 
         // 富化数据：添加用户信息
+        Set<Long> userIds = new HashSet<>();
+        for (FeedCommentInfo comment : comments) {
+            userIds.add(comment.getUserId());
+        }
+        Map<Long, UserSummary> users = userSummaryCacheService.getAll(userIds);
         List<Map<String, Object>> enriched = new ArrayList<>();
         for (FeedCommentInfo comment : comments) {
             Map<String, Object> item = new HashMap<>();
@@ -336,7 +505,7 @@ public class SocialServiceImpl implements SocialService {
             item.put("createTime", comment.getCreateTime());
 
             // 添加用户信息
-            UserInfo user = userMapper.selectById(comment.getUserId());
+            UserSummary user = users.get(comment.getUserId());
             if (user != null) {
                 item.put("userId", user.getId());
                 item.put("username", user.getUsername());
@@ -432,7 +601,7 @@ public class SocialServiceImpl implements SocialService {
         // 获取所有关注该用户的用户列表
         List<FriendshipInfo> followers = friendshipMapper.selectFollowerList(userId, 0, 1000); // 简化：最多通知1000个粉丝
 
-        UserInfo feedAuthor = userMapper.selectById(userId);
+        UserSummary feedAuthor = userSummaryCacheService.get(userId);
         String authorName = feedAuthor.getNickname() != null ? feedAuthor.getNickname() : feedAuthor.getUsername();
 
         for (FriendshipInfo friendship : followers) {
@@ -0,0 +1,341 @@
+package com.cityquest.service.impl;
+
+import com.cityquest.entity.ProductInfo;
+import com.cityquest.mapper.ProductMapper;
+import com.cityquest.service.StockReservationService;
+import com.cityquest.util.TransactionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 商品库存预扣服务实现
+ * product_stock:{productId} 保存可兑换库存，每个商品一个计数器，扣减互不阻塞，也不再争抢 product_info 的行锁；
+ * 计数器变化时商品ID记入 product_stock_dirty，写回时取出后把计数器当前值覆盖到数据库，
+ * 写回状态全部在 Redis 中，任一节点宕机不会丢失，也不依赖各节点内存中的增量
+ */
+@Service
+public class StockReservationServiceImpl implements StockReservationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockReservationServiceImpl.class);
+
+    private static final String STOCK_KEY_PREFIX = "product_stock:";
+    private static final String DIRTY_KEY = "product_stock_dirty";
+    private static final String FLUSH_LOCK_KEY = "product_stock_flush_lock";
+
+    // KEYS[1] 为待写回集合，其后为各商品计数器，ARGV 前半为数量、后半为商品ID；
+    // 逐个检查全部商品，都足够时才一起扣减；返回0表示成功，i 表示第 i 个商品库存不足，-i 表示其计数器不存在
+    private static final String RESERVE_SCRIPT =
+            "local n = #KEYS - 1 " +
+            "for i = 1, n do " +
+            "  local stock = redis.call('GET', KEYS[i + 1]) " +
+            "  if not stock then return -i end " +
+            "  if tonumber(stock) < tonumber(ARGV[i]) then return i end " +
+            "end " +
+            "for i = 1, n do " +
+            "  redis.call('DECRBY', KEYS[i + 1], ARGV[i]) " +
+            "  redis.call('SADD', KEYS[1], ARGV[n + i]) " +
+            "end " +
+            "return 0";
+
+    // 全部计数器存在时才一起归还并返回0；第 i 个计数器不存在时不做修改并返回 -i，由调用方加载后重试
+    private static final String RELEASE_SCRIPT =
+            "local n = #KEYS - 1 " +
+            "for i = 1, n do " +
+            "  if redis.call('EXISTS', KEYS[i + 1]) == 0 then return -i end " +
+            "end " +
+            "for i = 1, n do " +
+            "  redis.call('INCRBY', KEYS[i + 1], ARGV[i]) " +
+            "  redis.call('SADD', KEYS[1], ARGV[n + i]) " +
+            "end " +
+            "return 0";
+
+    private static final String UNLOCK_SCRIPT =
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end " +
+            "return 0";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ProductMapper productMapper;
+
+    // 单条UPDATE最多携带的商品数
+    @Value("${mall.stock.batch-size:500}")
+    private int batchSize;
+
+    // 写回锁的持有时长（毫秒），节点在写回中途宕机时到期自动释放
+    @Value("${mall.stock.flush-lock-timeout:30000}")
+    private long flushLockTimeoutMillis;
+
+    @Override
+    public Integer reserve(Map<Integer, Integer> quantities) {
+        if (quantities == null || quantities.isEmpty()) {
+            return null;
+        }
+        List<Integer> productIds = new ArrayList<>(quantities.keySet());
+        for (Integer productId : productIds) {
+            Integer quantity = quantities.get(productId);
+            if (productId == null || quantity == null || quantity <= 0) {
+                throw new IllegalArgumentException("商品ID或数量不合法");
+            }
+        }
+
+        long result;
+        try {
+            result = eval(RESERVE_SCRIPT, productIds, quantities);
+            if (result < 0) {
+                load(productIds);
+                result = eval(RESERVE_SCRIPT, productIds, quantities);
+            }
+        } catch (Exception e) {
+            // 计数器是库存的唯一来源，不可用时直接拒绝，避免绕过计数器扣减数据库后两边不一致
+            logger.error("Stock counters of products {} unavailable", productIds, e);
+            throw new RuntimeException("库存服务暂不可用，请稍后重试");
+        }
+        if (result > 0) {
+            return productIds.get((int) result - 1);
+        }
+        if (result < 0) {
+            // 重新加载后计数器仍不存在，说明商品已被删除
+            return productIds.get((int) -result - 1);
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            Map<Integer, Integer> reserved = new LinkedHashMap<>(quantities);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        releaseInRedis(reserved);
+                    }
+                }
+            });
+        }
+        return null;
+    }
+
+    @Override
+    public void release(Map<Integer, Integer> quantities) {
+        if (quantities == null || quantities.isEmpty()) {
+            return;
+        }
+        Map<Integer, Integer> released = new LinkedHashMap<>(quantities);
+        TransactionUtil.afterCommit(() -> releaseInRedis(released));
+    }
+
+    @Override
+    public Map<Integer, Integer> getStock(Collection<Integer> productIds) {
+        Map<Integer, Integer> result = new HashMap<>();
+        if (productIds == null || productIds.isEmpty()) {
+            return result;
+        }
+        List<Integer> ids = new ArrayList<>(productIds);
+        List<String> keys = new ArrayList<>(ids.size());
+        for (Integer productId : ids) {
+            keys.add(STOCK_KEY_PREFIX + productId);
+        }
+        try {
+            List<String> values = stringRedisTemplate.opsForValue().multiGet(keys);
+            if (values == null) {
+                return result;
+            }
+            for (int i = 0; i < ids.size(); i++) {
+                if (values.get(i) != null) {
+                    result.put(ids.get(i), Integer.valueOf(values.get(i)));
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to read stock counters of {} products", ids.size(), e);
+        }
+        return result;
+    }
+
+    @Override
+    public void setStock(Integer productId, int stock) {
+        if (productId == null) {
+            return;
+        }
+        TransactionUtil.afterCommit(() -> {
+            try {
+                stringRedisTemplate.opsForValue().set(STOCK_KEY_PREFIX + productId, String.valueOf(Math.max(stock, 0)));
+                // 覆盖前可能有写回把旧计数器写入数据库，标记后由下次写回以新库存为准
+                stringRedisTemplate.opsForSet().add(DIRTY_KEY, String.valueOf(productId));
+            } catch (Exception e) {
+                logger.error("Failed to set stock counter of product {} to {}", productId, stock, e);
+            }
+        });
+    }
+
+    @Override
+    public void reset(Integer productId) {
+        if (productId == null) {
+            return;
+        }
+        TransactionUtil.afterCommit(() -> {
+            try {
+                stringRedisTemplate.delete(STOCK_KEY_PREFIX + productId);
+                stringRedisTemplate.opsForSet().remove(DIRTY_KEY, String.valueOf(productId));
+            } catch (Exception e) {
+                logger.warn("Failed to reset stock counter of product {}", productId, e);
+            }
+        });
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${mall.stock.flush-interval:1000}")
+    public void flush() {
+        String token = UUID.randomUUID().toString();
+        try {
+            Boolean locked = stringRedisTemplate.opsForValue()
+                    .setIfAbsent(FLUSH_LOCK_KEY, token, Duration.ofMillis(flushLockTimeoutMillis));
+            if (!Boolean.TRUE.equals(locked)) {
+                // 其他节点正在写回，同时写回可能把较旧的值覆盖到较新的值之上
+                return;
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to acquire stock flush lock", e);
+            return;
+        }
+        try {
+            while (flushBatch()) {
+                // 继续写回下一批
+            }
+        } finally {
+            try {
+                stringRedisTemplate.execute((RedisCallback<Long>) connection ->
+                        ((StringRedisConnection) connection).eval(UNLOCK_SCRIPT, ReturnType.INTEGER, 1,
+                                FLUSH_LOCK_KEY, token));
+            } catch (Exception e) {
+                logger.warn("Failed to release stock flush lock", e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("Failed to flush product stock on shutdown", e);
+        }
+    }
+
+    /**
+     * 取出一批待写回的商品，读取计数器当前值覆盖到数据库
+     *
+     * @return 是否可能还有待写回的商品
+     */
+    private boolean flushBatch() {
+        List<String> ids;
+        try {
+            ids = stringRedisTemplate.opsForSet().pop(DIRTY_KEY, batchSize);
+        } catch (Exception e) {
+            logger.warn("Failed to read dirty stock counters", e);
+            return false;
+        }
+        if (ids == null || ids.isEmpty()) {
+            return false;
+        }
+        Map<Integer, Integer> batch = new HashMap<>();
+        try {
+            List<String> keys = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                keys.add(STOCK_KEY_PREFIX + id);
+            }
+            List<String> values = stringRedisTemplate.opsForValue().multiGet(keys);
+            for (int i = 0; i < ids.size(); i++) {
+                // 计数器已被丢弃的商品（已删除）无需写回
+                if (values != null && values.get(i) != null) {
+                    batch.put(Integer.valueOf(ids.get(i)), Integer.valueOf(values.get(i)));
+                }
+            }
+            if (!batch.isEmpty()) {
+                productMapper.batchSetStock(batch);
+            }
+        } catch (Exception e) {
+            // 写回失败时放回待写回集合，等待下次重试
+            logger.error("Failed to flush stock of {} products", ids.size(), e);
+            try {
+                stringRedisTemplate.opsForSet().add(DIRTY_KEY, ids.toArray(new String[0]));
+            } catch (Exception re) {
+                logger.error("Failed to requeue dirty stock counters {}", ids, re);
+            }
+            return false;
+        }
+        return ids.size() >= batchSize;
+    }
+
+    private void releaseInRedis(Map<Integer, Integer> quantities) {
+        List<Integer> productIds = new ArrayList<>(quantities.keySet());
+        try {
+            long result = eval(RELEASE_SCRIPT, productIds, quantities);
+            if (result < 0) {
+                // 计数器丢失（Redis 重启或淘汰）时先按数据库库存加载再归还，否则这部分库存会永久丢失
+                load(productIds);
+                result = eval(RELEASE_SCRIPT, productIds, quantities);
+            }
+            while (result < 0 && !productIds.isEmpty()) {
+                // 加载后仍不存在的商品已被删除，无需归还
+                Integer deleted = productIds.remove((int) -result - 1);
+                logger.info("Skipping stock release of deleted product {}", deleted);
+                result = productIds.isEmpty() ? 0 : eval(RELEASE_SCRIPT, productIds, quantities);
+            }
+        } catch (Exception e) {
+            // 数据库中的订单已确定，库存只能人工补回
+            logger.error("Failed to release stock {} back to counters", quantities, e);
+        }
+    }
+
+    /**
+     * 为缺失计数器的商品按数据库库存初始化计数器，已存在的保持不变
+     */
+    private void load(List<Integer> productIds) {
+        List<ProductInfo> products = productMapper.selectByIds(productIds);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (ProductInfo product : products) {
+                int stock = product.getStock() != null ? product.getStock() : 0;
+                conn.setNX(STOCK_KEY_PREFIX + product.getId(), String.valueOf(Math.max(stock, 0)));
+            }
+            return null;
+        });
+    }
+
+    private long eval(String script, List<Integer> productIds, Map<Integer, Integer> quantities) {
+        int n = productIds.size();
+        String[] keysAndArgs = new String[1 + n * 3];
+        keysAndArgs[0] = DIRTY_KEY;
+        for (int i = 0; i < n; i++) {
+            Integer productId = productIds.get(i);
+            keysAndArgs[1 + i] = STOCK_KEY_PREFIX + productId;
+            keysAndArgs[1 + n + i] = String.valueOf(quantities.get(productId));
+            keysAndArgs[1 + 2 * n + i] = String.valueOf(productId);
+        }
+        Long result = stringRedisTemplate.execute((RedisCallback<Long>) connection ->
+                ((StringRedisConnection) connection).eval(script, ReturnType.INTEGER, n + 1, keysAndArgs));
+        if (result == null) {
+            throw new IllegalStateException("Stock script returned no result");
+        }
+        return result;
+    }
+}
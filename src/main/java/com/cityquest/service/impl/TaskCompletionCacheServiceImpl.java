@@ -0,0 +1,117 @@
+package com.cityquest.service.impl;
+
+import com.cityquest.mapper.RecordMapper;
+import com.cityquest.service.TaskCompletionCacheService;
+import com.cityquest.util.LongHashSet;
+import com.cityquest.util.TransactionUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 用户任务完成状态缓存服务实现
+ * 每个用户维护两个任务ID集合：checked 记录已查询过的任务，completed 记录其中已完成的任务；
+ * 集合大小只与查询过的任务数有关，不随任务ID增长
+ */
+@Service
+public class TaskCompletionCacheServiceImpl implements TaskCompletionCacheService {
+
+    @Autowired
+    private RecordMapper recordMapper;
+
+    // 最多缓存的用户数
+    @Value("${task.completion-cache.max-users:10000}")
+    private int maxUsers;
+
+    // 单个用户缓存的有效期（毫秒），兜底多节点部署时的失效延迟
+    @Value("${task.completion-cache.ttl:600000}")
+    private long ttlMillis;
+
+    private final Map<Long, Entry> entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > maxUsers;
+        }
+    };
+
+    @Override
+    public Set<Integer> getCompletedTaskIds(Long userId, Collection<Integer> taskIds) {
+        if (userId == null || taskIds == null || taskIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Entry entry = getOrCreateEntry(userId);
+
+        Set<Integer> result = new HashSet<>();
+        List<Integer> unknown = new ArrayList<>();
+        synchronized (entry) {
+            for (Integer taskId : taskIds) {
+                if (taskId == null || taskId <= 0) {
+                    continue;
+                }
+                if (!entry.checked.contains(taskId)) {
+                    unknown.add(taskId);
+                } else if (entry.completed.contains(taskId)) {
+                    result.add(taskId);
+                }
+            }
+        }
+        if (unknown.isEmpty()) {
+            return result;
+        }
+
+        List<Integer> completed = recordMapper.selectCompletedTaskIds(userId, unknown);
+        result.addAll(completed);
+        synchronized (entry) {
+            for (Integer taskId : unknown) {
+                entry.checked.add(taskId);
+            }
+            for (Integer taskId : completed) {
+                entry.completed.add(taskId);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void evict(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        TransactionUtil.afterCommit(() -> {
+            synchronized (entries) {
+                entries.remove(userId);
+            }
+        });
+    }
+
+    private Entry getOrCreateEntry(Long userId) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(userId);
+            if (entry == null || entry.expireAt < now) {
+                entry = new Entry(now + ttlMillis);
+                entries.put(userId, entry);
+            }
+            return entry;
+        }
+    }
+
+    private static class Entry {
+        private final LongHashSet checked = new LongHashSet(16);
+        private final LongHashSet completed = new LongHashSet(16);
+        private final long expireAt;
+
+        Entry(long expireAt) {
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.cityquest.service.impl;
+
+import com.cityquest.mapper.TaskMapper;
+import com.cityquest.service.TaskCompletionCounterService;
+import com.cityquest.util.TransactionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 任务完成数计数服务实现
+ */
+@Service
+public class TaskCompletionCounterServiceImpl implements TaskCompletionCounterService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskCompletionCounterServiceImpl.class);
+
+    @Autowired
+    private TaskMapper taskMapper;
+
+    // 单条UPDATE最多携带的任务数
+    @Value("${task.completion-counter.batch-size:500}")
+    private int batchSize;
+
+    // 任务ID -> 尚未写回数据库的增量
+    private final ConcurrentHashMap<Integer, Integer> pending = new ConcurrentHashMap<>();
+
+    @Override
+    public void increment(Integer taskId) {
+        add(taskId, 1);
+    }
+
+    @Override
+    public void decrement(Integer taskId) {
+        add(taskId, -1);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${task.completion-counter.flush-interval:5000}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Integer, Integer> drained = new HashMap<>();
+        for (Integer taskId : new ArrayList<>(pending.keySet())) {
+            Integer delta = pending.remove(taskId);
+            if (delta != null && delta != 0) {
+                drained.put(taskId, delta);
+            }
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        Map<Integer, Integer> batch = new HashMap<>();
+        for (Map.Entry<Integer, Integer> entry : drained.entrySet()) {
+            batch.put(entry.getKey(), entry.getValue());
+            if (batch.size() >= batchSize) {
+                writeBatch(batch);
+                batch = new HashMap<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+    }
+
+    @Override
+    @Scheduled(cron = "${task.completion-counter.reconcile-cron:0 30 3 * * ?}")
+    public synchronized int reconcile() {
+        flush();
+        // 刚累积但尚未写回的任务跳过校正，避免与后续写回重复计数
+        Set<Integer> inFlight = new HashSet<>(pending.keySet());
+        int fixed = taskMapper.reconcileCompletionCount(inFlight);
+        if (fixed > 0) {
+            logger.warn("Task completion count reconciled: {} tasks corrected", fixed);
+        }
+        return fixed;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("Failed to flush task completion counts on shutdown", e);
+        }
+    }
+
+    private void add(Integer taskId, int delta) {
+        if (taskId == null) {
+            return;
+        }
+        // 事务回滚时不应计数
+        TransactionUtil.afterCommit(() -> merge(taskId, delta));
+    }
+
+    private void merge(Integer taskId, int delta) {
+        pending.merge(taskId, delta, (a, b) -> {
+            int sum = a + b;
+            return sum == 0 ? null : sum;
+        });
+    }
+
+    private void writeBatch(Map<Integer, Integer> batch) {
+        try {
+            taskMapper.batchAddCompletionCount(batch);
+        } catch (Exception e) {
+            // 写回失败时放回内存，等待下次重试
+            logger.error("Failed to flush task completion counts for {} tasks", batch.size(), e);
+            for (Map.Entry<Integer, Integer> entry : batch.entrySet()) {
+                merge(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+}
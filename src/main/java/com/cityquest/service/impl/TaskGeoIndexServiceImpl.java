@@ -0,0 +1,282 @@
+package com.cityquest.service.impl;
+
+import com.cityquest.entity.TaskInfo;
+import com.cityquest.mapper.TaskMapper;
+import com.cityquest.service.TaskGeoIndexService;
+import com.cityquest.util.DistanceUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 任务地理位置索引服务实现
+ * 将经纬度按固定步长划分网格，查询时只扫描覆盖搜索范围的网格，再用Haversine公式精确过滤；
+ * 全量重建期间的增量更新会被记录，并在替换前重放到新索引上，避免被重建时读到的旧数据覆盖
+ */
+@Service
+public class TaskGeoIndexServiceImpl implements TaskGeoIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskGeoIndexServiceImpl.class);
+
+    // 每度纬度对应的公里数
+    private static final double KM_PER_LAT_DEGREE = 110.574;
+
+    // 赤道上每度经度对应的公里数
+    private static final double KM_PER_LON_DEGREE = 111.320;
+
+    @Autowired
+    private TaskMapper taskMapper;
+
+    // 网格边长（度），0.05度约5.5公里
+    @Value("${task.geo-index.cell-size:0.05}")
+    private double cellSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 网格 -> 网格内任务ID
+    private Map<Long, Set<Integer>> cells = new HashMap<>();
+
+    // 任务ID -> [经度, 纬度]
+    private Map<Integer, double[]> positions = new HashMap<>();
+
+    private volatile boolean initialized = false;
+
+    // 重建期间的增量更新：任务ID -> 新位置，null 表示移除；未在重建时为null
+    private Map<Integer, double[]> pendingWrites;
+
+    /**
+     * 定时全量重建，修复多节点部署或直接改库导致的索引偏差
+     */
+    @Scheduled(initialDelayString = "${task.geo-index.refresh-interval:300000}",
+            fixedDelayString = "${task.geo-index.refresh-interval:300000}")
+    public void scheduledRebuild() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            logger.error("Failed to rebuild task geo index", e);
+        }
+    }
+
+    @Override
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            pendingWrites = new LinkedHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        List<TaskInfo> tasks;
+        try {
+            tasks = taskMapper.selectActiveLocations();
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                pendingWrites = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        Map<Long, Set<Integer>> newCells = new HashMap<>();
+        Map<Integer, double[]> newPositions = new HashMap<>();
+        for (TaskInfo task : tasks) {
+            if (!isIndexable(task)) {
+                continue;
+            }
+            addTo(newCells, newPositions, task.getId(), new double[]{task.getLongitude(), task.getLatitude()});
+        }
+
+        lock.writeLock().lock();
+        try {
+            // 读取数据库期间发生的更新比读到的数据新，重放到新索引后再替换
+            for (Map.Entry<Integer, double[]> write : pendingWrites.entrySet()) {
+                removeFrom(newCells, newPositions, write.getKey());
+                if (write.getValue() != null) {
+                    addTo(newCells, newPositions, write.getKey(), write.getValue());
+                }
+            }
+            pendingWrites = null;
+            cells = newCells;
+            positions = newPositions;
+            initialized = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Task geo index rebuilt: {} active tasks in {} cells", newPositions.size(), newCells.size());
+    }
+
+    @Override
+    public void upsert(TaskInfo taskInfo) {
+        if (taskInfo == null || taskInfo.getId() == null) {
+            return;
+        }
+        if (!isIndexable(taskInfo)) {
+            remove(taskInfo.getId());
+            return;
+        }
+        double[] position = new double[]{taskInfo.getLongitude(), taskInfo.getLatitude()};
+        lock.writeLock().lock();
+        try {
+            removeFrom(cells, positions, taskInfo.getId());
+            addTo(cells, positions, taskInfo.getId(), position);
+            if (pendingWrites != null) {
+                pendingWrites.put(taskInfo.getId(), position);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Integer taskId) {
+        if (taskId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeFrom(cells, positions, taskId);
+            if (pendingWrites != null) {
+                pendingWrites.put(taskId, null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Integer> findNearby(double longitude, double latitude, double radiusKm, int limit) {
+        if (radiusKm <= 0 || limit <= 0) {
+            return Collections.emptyList();
+        }
+        ensureInitialized();
+
+        double radiusMeters = radiusKm * 1000.0;
+        double latDelta = radiusKm / KM_PER_LAT_DEGREE;
+        double lonDelta = radiusKm / (KM_PER_LON_DEGREE * Math.max(Math.cos(Math.toRadians(latitude)), 0.01));
+
+        long minLatCell = cellIndex(Math.max(latitude - latDelta, -90.0));
+        long maxLatCell = cellIndex(Math.min(latitude + latDelta, 90.0));
+        long minLonCell = cellIndex(longitude - lonDelta);
+        long maxLonCell = cellIndex(longitude + lonDelta);
+
+        List<Candidate> candidates = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            long cellCount = (maxLatCell - minLatCell + 1) * (maxLonCell - minLonCell + 1);
+            if (cellCount > positions.size()) {
+                // 搜索范围比任务总数还大时直接全量扫描
+                for (Map.Entry<Integer, double[]> entry : positions.entrySet()) {
+                    collect(entry.getKey(), entry.getValue(), longitude, latitude, radiusMeters, candidates);
+                }
+            } else {
+                for (long latCell = minLatCell; latCell <= maxLatCell; latCell++) {
+                    for (long lonCell = minLonCell; lonCell <= maxLonCell; lonCell++) {
+                        Set<Integer> ids = cells.get(cellKey(latCell, lonCell));
+                        if (ids == null) {
+                            continue;
+                        }
+                        for (Integer id : ids) {
+                            collect(id, positions.get(id), longitude, latitude, radiusMeters, candidates);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        candidates.sort(Comparator.comparingDouble(c -> c.distance));
+        int size = Math.min(limit, candidates.size());
+        List<Integer> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(candidates.get(i).taskId);
+        }
+        return result;
+    }
+
+    private void ensureInitialized() {
+        if (initialized) {
+            return;
+        }
+        synchronized (this) {
+            if (!initialized) {
+                rebuild();
+            }
+        }
+    }
+
+    private void collect(Integer taskId, double[] position, double longitude, double latitude,
+                         double radiusMeters, List<Candidate> candidates) {
+        if (position == null) {
+            return;
+        }
+        double distance = DistanceUtil.calculateDistance(latitude, longitude, position[1], position[0]);
+        if (distance <= radiusMeters) {
+            candidates.add(new Candidate(taskId, distance));
+        }
+    }
+
+    private void addTo(Map<Long, Set<Integer>> cells, Map<Integer, double[]> positions, Integer taskId,
+                       double[] position) {
+        positions.put(taskId, position);
+        cells.computeIfAbsent(cellKey(position[0], position[1]), k -> new HashSet<>()).add(taskId);
+    }
+
+    private void removeFrom(Map<Long, Set<Integer>> cells, Map<Integer, double[]> positions, Integer taskId) {
+        double[] old = positions.remove(taskId);
+        if (old == null) {
+            return;
+        }
+        long key = cellKey(old[0], old[1]);
+        Set<Integer> ids = cells.get(key);
+        if (ids != null) {
+            ids.remove(taskId);
+            if (ids.isEmpty()) {
+                cells.remove(key);
+            }
+        }
+    }
+
+    private boolean isIndexable(TaskInfo task) {
+        return task.getId() != null
+                && task.getStatus() != null && task.getStatus() == 1
+                && task.getLongitude() != null && task.getLatitude() != null;
+    }
+
+    private long cellIndex(double degree) {
+        return (long) Math.floor(degree / cellSize);
+    }
+
+    private long cellKey(double longitude, double latitude) {
+        return cellKey(cellIndex(latitude), cellIndex(longitude));
+    }
+
+    private long cellKey(long latCell, long lonCell) {
+        return (latCell << 32) | (lonCell & 0xFFFFFFFFL);
+    }
+
+    private static class Candidate {
+        private final Integer taskId;
+        private final double distance;
+
+        Candidate(Integer taskId, double distance) {
+            this.taskId = taskId;
+            this.distance = distance;
+        }
+    }
+}
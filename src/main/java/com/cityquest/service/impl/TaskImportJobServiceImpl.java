@@ -0,0 +1,161 @@
+package com.cityquest.service.impl;
+
+import com.cityquest.dto.task.TaskImportJob;
+import com.cityquest.service.TaskImportJobService;
+import com.cityquest.service.TaskService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步任务导入作业服务实现
+ * 导入在有界线程池中执行，排队已满时直接拒绝；已结束的作业保留一段时间供查询
+ */
+@Service
+public class TaskImportJobServiceImpl implements TaskImportJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskImportJobServiceImpl.class);
+
+    @Autowired
+    private TaskService taskService;
+
+    // 同时执行导入的线程数
+    @Value("${task.import.worker-threads:2}")
+    private int workerThreads;
+
+    // 等待执行的作业上限
+    @Value("${task.import.queue-capacity:20}")
+    private int queueCapacity;
+
+    // 已结束作业的保留时长（毫秒）
+    @Value("${task.import.job-ttl:3600000}")
+    private long jobTtlMillis;
+
+    private final Map<String, TaskImportJob> jobs = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "task-import-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public TaskImportJob submit(MultipartFile file, Long createBy) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("文件不能为空");
+        }
+        String filename = file.getOriginalFilename() != null ? file.getOriginalFilename() : "unknown";
+        if (!taskService.isSupportedImportFile(filename)) {
+            throw new IllegalArgumentException("暂不支持的文件类型：" + filename);
+        }
+
+        // 请求结束后容器会清理上传的临时文件，需先复制一份
+        Path tempFile = Files.createTempFile("task-import-job-", ".upload");
+        try (InputStream inputStream = file.getInputStream()) {
+            Files.copy(inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+
+        TaskImportJob job = new TaskImportJob();
+        job.setJobId(UUID.randomUUID().toString().replace("-", ""));
+        job.setFileName(filename);
+        job.setCreateBy(createBy);
+        job.setStatus(TaskImportJob.STATUS_PENDING);
+        job.setCreateTime(new Date());
+        job.getResult().setFileName(filename);
+
+        jobs.put(job.getJobId(), job);
+        try {
+            executor.execute(() -> runJob(job, tempFile));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getJobId());
+            Files.deleteIfExists(tempFile);
+            throw new RuntimeException("导入任务排队过多，请稍后再试");
+        }
+        return job;
+    }
+
+    @Override
+    public TaskImportJob getJob(String jobId) {
+        if (jobId == null) {
+            return null;
+        }
+        return jobs.get(jobId);
+    }
+
+    /**
+     * 定时清理过期的已结束作业
+     */
+    @Scheduled(fixedDelayString = "${task.import.cleanup-interval:60000}")
+    public void evictExpiredJobs() {
+        long expireBefore = System.currentTimeMillis() - jobTtlMillis;
+        Iterator<TaskImportJob> iterator = jobs.values().iterator();
+        while (iterator.hasNext()) {
+            TaskImportJob job = iterator.next();
+            if (job.isFinished() && job.getFinishTime() != null
+                    && job.getFinishTime().getTime() < expireBefore) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void runJob(TaskImportJob job, Path tempFile) {
+        job.setStartTime(new Date());
+        job.setStatus(TaskImportJob.STATUS_RUNNING);
+        String finalStatus = TaskImportJob.STATUS_FAILED;
+        try (InputStream inputStream = Files.newInputStream(tempFile)) {
+            taskService.importTasks(inputStream, job.getFileName(), job.getCreateBy(), job.getResult());
+            finalStatus = TaskImportJob.STATUS_COMPLETED;
+        } catch (Exception e) {
+            logger.error("Task import job {} failed", job.getJobId(), e);
+            job.setMessage(e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException e) {
+                logger.warn("Failed to delete temp file of task import job {}", job.getJobId(), e);
+            }
+            // 先写结束时间再切换状态，查询方看到结束状态时结束时间已就绪
+            job.setFinishTime(new Date());
+            job.setStatus(finalStatus);
+        }
+    }
+}
@@ -2,25 +2,49 @@ package com.cityquest.service.impl;
 
 import com.cityquest.dto.task.TaskImportResult;
 import com.cityquest.entity.TaskInfo;
-import com.cityquest.mapper.RecordMapper;
 import com.cityquest.mapper.TaskMapper;
+import com.cityquest.service.TaskCompletionCacheService;
+import com.cityquest.service.TaskGeoIndexService;
 import com.cityquest.service.TaskService;
 import org.apache.poi.EncryptedDocumentException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Locale;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.nio.charset.StandardCharsets;
+import javax.xml.parsers.ParserConfigurationException;
 
 /**
  * 任务服务实现类
@@ -28,11 +52,31 @@ import java.nio.charset.StandardCharsets;
 @Service
 public class TaskServiceImpl implements TaskService {
 
+    private static final Logger logger = LoggerFactory.getLogger(TaskServiceImpl.class);
+
+    // 导入文件的列数：任务名称、描述、经度、纬度、地址、积分奖励、类型、状态、封面
+    private static final int IMPORT_COLUMN_COUNT = 9;
+
     @Autowired
     private TaskMapper taskMapper;
 
     @Autowired
-    private RecordMapper recordMapper;
+    private TaskCompletionCacheService taskCompletionCacheService;
+
+    @Autowired
+    private TaskGeoIndexService taskGeoIndexService;
+
+    // 附近任务最多返回条数
+    @Value("${task.nearby.limit:20}")
+    private int nearbyLimit;
+
+    // 导入时每批写入的行数
+    @Value("${task.import.batch-size:500}")
+    private int importBatchSize;
+
+    // 单次导入最多保留的失败明细条数，超出的只计入失败数
+    @Value("${task.import.max-failures:1000}")
+    private int importMaxFailures;
 
     @Override
     public Map<String, Object> getTaskList(Integer type, Integer status, Integer page, Integer pageSize, String keyword, Long userId) {
@@ -49,10 +93,14 @@ public class TaskServiceImpl implements TaskService {
         
         // 如果提供了userId，同时返回每个任务的完成状态
         if (userId != null) {
-            Map<Integer, Boolean> completionMap = new HashMap<>();
+            List<Integer> taskIds = new ArrayList<>(taskList.size());
             for (TaskInfo task : taskList) {
-                boolean completed = recordMapper.checkUserTaskCompletion(userId, task.getId()) > 0;
-                completionMap.put(task.getId(), completed);
+                taskIds.add(task.getId());
+            }
+            Set<Integer> completedIds = taskCompletionCacheService.getCompletedTaskIds(userId, taskIds);
+            Map<Integer, Boolean> completionMap = new HashMap<>();
+            for (Integer taskId : taskIds) {
+                completionMap.put(taskId, completedIds.contains(taskId));
             }
             result.put("completionStatus", completionMap);
         }
@@ -67,66 +115,158 @@ public class TaskServiceImpl implements TaskService {
 
     @Override
     public boolean createTask(TaskInfo taskInfo) {
+        prepareForInsert(taskInfo);
+        boolean inserted = taskMapper.insert(taskInfo) > 0;
+        if (inserted) {
+            taskGeoIndexService.upsert(taskInfo);
+        }
+        return inserted;
+    }
+
+    private void prepareForInsert(TaskInfo taskInfo) {
         if (taskInfo.getStatus() == null) {
             taskInfo.setStatus(0);
         }
         if (taskInfo.getType() == null) {
             taskInfo.setType(0);
         }
-        taskInfo.setCreateTime(new Date());
-        taskInfo.setUpdateTime(new Date());
+        Date now = new Date();
+        taskInfo.setCreateTime(now);
+        taskInfo.setUpdateTime(now);
         taskInfo.setCompletionCount(0);
-        return taskMapper.insert(taskInfo) > 0;
     }
 
     @Override
     public boolean updateTask(TaskInfo taskInfo) {
         taskInfo.setUpdateTime(new Date());
-        return taskMapper.update(taskInfo) > 0;
+        boolean updated = taskMapper.update(taskInfo) > 0;
+        if (updated) {
+            // 更新可能只携带部分字段，重新读取完整的状态与经纬度
+            TaskInfo latest = taskMapper.selectById(taskInfo.getId());
+            if (latest != null) {
+                taskGeoIndexService.upsert(latest);
+            } else {
+                taskGeoIndexService.remove(taskInfo.getId());
+            }
+        }
+        return updated;
     }
 
     @Override
     public boolean deleteTask(Integer id) {
-        return taskMapper.delete(id) > 0;
+        boolean deleted = taskMapper.delete(id) > 0;
+        if (deleted) {
+            taskGeoIndexService.remove(id);
+        }
+        return deleted;
     }
 
     @Override
     public List<TaskInfo> getNearbyTasks(Double longitude, Double latitude, Double radius) {
-        return taskMapper.selectNearbyTasks(longitude, latitude, radius);
+        if (longitude == null || latitude == null || radius == null) {
+            return Collections.emptyList();
+        }
+        List<Integer> ids = taskGeoIndexService.findNearby(longitude, latitude, radius, nearbyLimit);
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // 按索引返回的距离顺序重新排列
+        Map<Integer, TaskInfo> taskMap = new HashMap<>();
+        for (TaskInfo task : taskMapper.selectByIds(ids)) {
+            taskMap.put(task.getId(), task);
+        }
+        List<TaskInfo> result = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            TaskInfo task = taskMap.get(id);
+            if (task != null) {
+                result.add(task);
+            }
+        }
+        return result;
     }
 
     @Override
     public List<TaskInfo> getHotTasks(Integer limit) {
-        // 使用实时统计完成人数的查询
+        // 完成人数读取task_info.completion_count（由TaskCompletionCounterService维护）
         int offset = 0;
         return taskMapper.selectList(null, 1, null, offset, limit);
     }
 
     @Override
     public TaskImportResult importTasks(InputStream inputStream, String filename, Long createBy) throws IOException {
+        TaskImportResult result = new TaskImportResult();
+        importTasks(inputStream, filename, createBy, result);
+        return result;
+    }
+
+    @Override
+    public boolean isSupportedImportFile(String filename) {
+        if (filename == null) {
+            return false;
+        }
+        String lowerName = filename.toLowerCase(Locale.ROOT);
+        return lowerName.endsWith(".xlsx") || lowerName.endsWith(".xls")
+                || lowerName.endsWith(".csv") || lowerName.endsWith(".txt");
+    }
+
+    @Override
+    public void importTasks(InputStream inputStream, String filename, Long createBy, TaskImportResult result) throws IOException {
         if (inputStream == null) {
             throw new IllegalArgumentException("文件数据不能为空");
         }
         String safeFilename = filename != null ? filename : "unknown";
-        TaskImportResult result = new TaskImportResult();
         result.setFileName(safeFilename);
+        result.setMaxFailures(importMaxFailures);
 
         String lowerName = safeFilename.toLowerCase(Locale.ROOT);
+        TaskBatchWriter writer = new TaskBatchWriter(result, createBy);
 
-        if (lowerName.endsWith(".xlsx") || lowerName.endsWith(".xls")) {
-            importFromWorkbook(inputStream, result, createBy);
+        if (lowerName.endsWith(".xlsx")) {
+            importFromXlsx(inputStream, writer);
+        } else if (lowerName.endsWith(".xls")) {
+            importFromWorkbook(inputStream, writer);
         } else if (lowerName.endsWith(".csv")) {
-            importFromDelimited(inputStream, result, createBy, ",");
+            importFromDelimited(inputStream, writer, ",");
         } else if (lowerName.endsWith(".txt")) {
-            importFromDelimited(inputStream, result, createBy, "\t");
+            importFromDelimited(inputStream, writer, "\t");
         } else {
             throw new IllegalArgumentException("暂不支持的文件类型：" + safeFilename);
         }
+        writer.flush();
+    }
 
-        return result;
+    /**
+     * 以SAX事件方式逐行读取xlsx第一个工作表，内存占用与行数无关
+     */
+    private void importFromXlsx(InputStream inputStream, TaskBatchWriter writer) throws IOException {
+        // OPCPackage从文件打开时按需解压，避免把整个压缩包读入内存
+        Path tempFile = Files.createTempFile("task-import-", ".xlsx");
+        try {
+            Files.copy(inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            try (OPCPackage pkg = OPCPackage.open(tempFile.toFile(), PackageAccess.READ)) {
+                ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+                XSSFReader xssfReader = new XSSFReader(pkg);
+                StylesTable styles = xssfReader.getStylesTable();
+                XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
+                if (!sheets.hasNext()) {
+                    return;
+                }
+                try (InputStream sheet = sheets.next()) {
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(new XSSFSheetXMLHandler(styles, null, strings,
+                            new TaskSheetHandler(writer), new DataFormatter(), false));
+                    parser.parse(new InputSource(sheet));
+                }
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("无法解析Excel文件，请检查格式是否正确", e);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
     }
 
-    private void importFromWorkbook(InputStream inputStream, TaskImportResult result, Long createBy) throws IOException {
+    private void importFromWorkbook(InputStream inputStream, TaskBatchWriter writer) throws IOException {
         try (Workbook workbook = WorkbookFactory.create(inputStream)) {
             Sheet sheet = workbook.getNumberOfSheets() > 0 ? workbook.getSheetAt(0) : null;
             if (sheet == null) {
@@ -140,7 +280,7 @@ public class TaskServiceImpl implements TaskService {
                     continue;
                 }
                 int displayRow = i + 1;
-                result.increaseTotalRows();
+                writer.getResult().increaseTotalRows();
                 String title = getCellValue(row, 0, formatter);
                 String description = getCellValue(row, 1, formatter);
                 String longitudeStr = getCellValue(row, 2, formatter);
@@ -152,14 +292,14 @@ public class TaskServiceImpl implements TaskService {
                 String coverImage = getCellValue(row, 8, formatter);
 
                 processRow(displayRow, title, description, longitudeStr, latitudeStr, address,
-                        rewardStr, typeStr, statusStr, coverImage, result, createBy);
+                        rewardStr, typeStr, statusStr, coverImage, writer);
             }
         } catch (EncryptedDocumentException e) {
             throw new IOException("无法解析Excel文件，请检查格式是否正确", e);
         }
     }
 
-    private void importFromDelimited(InputStream inputStream, TaskImportResult result, Long createBy, String delimiter) throws IOException {
+    private void importFromDelimited(InputStream inputStream, TaskBatchWriter writer, String delimiter) throws IOException {
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
             String line;
             int rowIndex = 0;
@@ -171,27 +311,31 @@ public class TaskServiceImpl implements TaskService {
                 if (!StringUtils.hasText(line)) {
                     continue;
                 }
-                result.increaseTotalRows();
+                writer.getResult().increaseTotalRows();
                 String[] parts = line.split(delimiter, -1);
                 if (parts.length == 0) {
                     continue;
                 }
-                String title = parts.length > 0 ? parts[0] : "";
-                String description = parts.length > 1 ? parts[1] : "";
-                String longitudeStr = parts.length > 2 ? parts[2] : "";
-                String latitudeStr = parts.length > 3 ? parts[3] : "";
-                String address = parts.length > 4 ? parts[4] : "";
-                String rewardStr = parts.length > 5 ? parts[5] : "";
-                String typeStr = parts.length > 6 ? parts[6] : "";
-                String statusStr = parts.length > 7 ? parts[7] : "";
-                String coverImage = parts.length > 8 ? parts[8] : "";
-
-                processRow(rowIndex, title, description, longitudeStr, latitudeStr, address,
-                        rewardStr, typeStr, statusStr, coverImage, result, createBy);
+                processRow(rowIndex, parts, writer);
             }
         }
     }
 
+    private void processRow(int rowIndex, String[] values, TaskBatchWriter writer) {
+        String title = values.length > 0 && values[0] != null ? values[0] : "";
+        String description = values.length > 1 && values[1] != null ? values[1] : "";
+        String longitudeStr = values.length > 2 && values[2] != null ? values[2] : "";
+        String latitudeStr = values.length > 3 && values[3] != null ? values[3] : "";
+        String address = values.length > 4 && values[4] != null ? values[4] : "";
+        String rewardStr = values.length > 5 && values[5] != null ? values[5] : "";
+        String typeStr = values.length > 6 && values[6] != null ? values[6] : "";
+        String statusStr = values.length > 7 && values[7] != null ? values[7] : "";
+        String coverImage = values.length > 8 && values[8] != null ? values[8] : "";
+
+        processRow(rowIndex, title, description, longitudeStr, latitudeStr, address,
+                rewardStr, typeStr, statusStr, coverImage, writer);
+    }
+
     private void processRow(int rowIndex,
                             String title,
                             String description,
@@ -202,8 +346,8 @@ public class TaskServiceImpl implements TaskService {
                             String typeStr,
                             String statusStr,
                             String coverImage,
-                            TaskImportResult result,
-                            Long createBy) {
+                            TaskBatchWriter writer) {
+        TaskImportResult result = writer.getResult();
         if (!StringUtils.hasText(title)) {
             result.addFailure(rowIndex, "任务名称不能为空");
             return;
@@ -220,8 +364,8 @@ public class TaskServiceImpl implements TaskService {
         if (StringUtils.hasText(coverImage)) {
             taskInfo.setCoverImage(coverImage.trim());
         }
-        if (createBy != null) {
-            taskInfo.setCreateBy(createBy);
+        if (writer.getCreateBy() != null) {
+            taskInfo.setCreateBy(writer.getCreateBy());
         }
 
         try {
@@ -254,12 +398,7 @@ public class TaskServiceImpl implements TaskService {
         }
         taskInfo.setStatus(status);
 
-        boolean inserted = this.createTask(taskInfo);
-        if (inserted) {
-            result.addSuccess(taskInfo);
-        } else {
-            result.addFailure(rowIndex, "数据库写入失败");
-        }
+        writer.add(rowIndex, taskInfo);
     }
 
     private Integer parseInteger(String value, int defaultValue, String fieldName, int rowIndex, TaskImportResult result) {
@@ -290,7 +429,7 @@ public class TaskServiceImpl implements TaskService {
     }
 
     private boolean isRowBlank(Row row, DataFormatter formatter) {
-        for (int i = 0; i < 9; i++) {
+        for (int i = 0; i < IMPORT_COLUMN_COUNT; i++) {
             if (StringUtils.hasText(getCellValue(row, i, formatter))) {
                 return false;
             }
@@ -303,4 +442,119 @@ public class TaskServiceImpl implements TaskService {
         String value = formatter.formatCellValue(cell);
         return StringUtils.hasText(value) ? value.trim() : null;
     }
+
+    /**
+     * 导入行的批量写入器：攒够一批后用一条多行INSERT写入
+     */
+    private class TaskBatchWriter {
+        private final TaskImportResult result;
+        private final Long createBy;
+        private final List<TaskInfo> tasks = new ArrayList<>();
+        private final List<Integer> rowIndexes = new ArrayList<>();
+
+        TaskBatchWriter(TaskImportResult result, Long createBy) {
+            this.result = result;
+            this.createBy = createBy;
+        }
+
+        TaskImportResult getResult() {
+            return result;
+        }
+
+        Long getCreateBy() {
+            return createBy;
+        }
+
+        void add(int rowIndex, TaskInfo taskInfo) {
+            prepareForInsert(taskInfo);
+            tasks.add(taskInfo);
+            rowIndexes.add(rowIndex);
+            if (tasks.size() >= Math.max(importBatchSize, 1)) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (tasks.isEmpty()) {
+                return;
+            }
+            try {
+                taskMapper.insertBatch(tasks);
+                result.addSuccessCount(tasks.size());
+                for (TaskInfo task : tasks) {
+                    taskGeoIndexService.upsert(task);
+                }
+            } catch (Exception e) {
+                // 整批失败时逐行重试，定位具体失败的行
+                logger.warn("Batch insert of {} imported tasks failed, retrying row by row", tasks.size(), e);
+                for (int i = 0; i < tasks.size(); i++) {
+                    insertSingle(rowIndexes.get(i), tasks.get(i));
+                }
+            }
+            result.increaseBatchCount();
+            tasks.clear();
+            rowIndexes.clear();
+        }
+
+        private void insertSingle(int rowIndex, TaskInfo taskInfo) {
+            try {
+                taskInfo.setId(null);
+                if (taskMapper.insert(taskInfo) > 0) {
+                    result.addSuccessCount(1);
+                    taskGeoIndexService.upsert(taskInfo);
+                } else {
+                    result.addFailure(rowIndex, "数据库写入失败");
+                }
+            } catch (Exception e) {
+                result.addFailure(rowIndex, "数据库写入失败");
+            }
+        }
+    }
+
+    /**
+     * xlsx工作表SAX回调：按行收集单元格文本，第一行为表头
+     */
+    private class TaskSheetHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final TaskBatchWriter writer;
+        private String[] values = new String[IMPORT_COLUMN_COUNT];
+        private int nextColumn;
+
+        TaskSheetHandler(TaskBatchWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            values = new String[IMPORT_COLUMN_COUNT];
+            nextColumn = 0;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (rowNum == 0) {
+                return;
+            }
+            boolean blank = true;
+            for (String value : values) {
+                if (StringUtils.hasText(value)) {
+                    blank = false;
+                    break;
+                }
+            }
+            if (blank) {
+                return;
+            }
+            writer.getResult().increaseTotalRows();
+            processRow(rowNum + 1, values, writer);
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = cellReference != null ? new CellReference(cellReference).getCol() : nextColumn;
+            nextColumn = column + 1;
+            if (column < IMPORT_COLUMN_COUNT && StringUtils.hasText(formattedValue)) {
+                values[column] = formattedValue.trim();
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -1,11 +1,15 @@
 package com.cityquest.service.impl;
 
+import com.cityquest.entity.PointsTransaction;
 import com.cityquest.entity.UserInfo;
 import com.cityquest.entity.dto.LoginRequest;
 import com.cityquest.entity.dto.RegisterRequest;
 import com.cityquest.mapper.UserMapper;
+import com.cityquest.service.AuthPrincipalCacheService;
+import com.cityquest.service.PointsLedgerService;
 import com.cityquest.service.UserService;
 import com.cityquest.service.OnlineUserService;
+import com.cityquest.service.UserSummaryCacheService;
 import com.cityquest.util.JwtUtil;
 import com.cityquest.util.SnowflakeIdGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -35,6 +39,15 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private OnlineUserService onlineUserService;
 
+    @Autowired
+    private UserSummaryCacheService userSummaryCacheService;
+
+    @Autowired
+    private AuthPrincipalCacheService authPrincipalCacheService;
+
+    @Autowired
+    private PointsLedgerService pointsLedgerService;
+
     @Override
     public Map<String, Object> login(LoginRequest loginRequest) {
         // 查询用户
@@ -59,6 +72,7 @@ public class UserServiceImpl implements UserService {
         userInfo.setStatus(1);
         userInfo.setUpdateTime(new Date());
         userMapper.update(userInfo);
+        userSummaryCacheService.evict(userInfo.getId());
 
         onlineUserService.markOnline(userInfo.getId(), token);
         
@@ -114,7 +128,13 @@ public class UserServiceImpl implements UserService {
     @Override
     public boolean updateUser(UserInfo userInfo) {
         userInfo.setUpdateTime(new Date());
-        return userMapper.update(userInfo) > 0;
+        boolean updated = userMapper.update(userInfo) > 0;
+        if (updated) {
+            userSummaryCacheService.evict(userInfo.getId());
+            // 状态可能被改为离线，已缓存的登录身份需重新校验
+            authPrincipalCacheService.invalidateUser(userInfo.getId());
+        }
+        return updated;
     }
 
     @Override
@@ -137,7 +157,14 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public boolean updatePoints(Long userId, Integer points) {
-        return userMapper.updatePoints(userId, points) > 0;
+        if (points == null || points == 0) {
+            return false;
+        }
+        // 管理员调整同样写入积分流水，扣减时不允许余额变为负数
+        if (points > 0) {
+            return pointsLedgerService.credit(userId, points, PointsTransaction.TYPE_ADMIN_ADJUST, null, "管理员调整");
+        }
+        return pointsLedgerService.debit(userId, -points, PointsTransaction.TYPE_ADMIN_ADJUST, null, "管理员调整");
     }
 
     @Override
@@ -147,7 +174,12 @@ public class UserServiceImpl implements UserService {
         if (user != null && "admin".equals(user.getRole())) {
             throw new RuntimeException("不能删除管理员用户");
         }
-        return userMapper.delete(id) > 0;
+        boolean deleted = userMapper.delete(id) > 0;
+        if (deleted) {
+            userSummaryCacheService.evict(id);
+            authPrincipalCacheService.invalidateUser(id);
+        }
+        return deleted;
     }
 
     @Override
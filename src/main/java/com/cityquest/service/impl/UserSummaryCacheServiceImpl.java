@@ -0,0 +1,170 @@
+package com.cityquest.service.impl;
+
+import com.cityquest.dto.user.UserSummary;
+import com.cityquest.entity.UserInfo;
+import com.cityquest.mapper.UserMapper;
+import com.cityquest.service.UserSummaryCacheService;
+import com.cityquest.util.TransactionUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 用户摘要缓存服务实现
+ * 失效时递增代数，加载前后代数不一致的结果不写入缓存，避免并发加载写回旧数据
+ */
+@Service
+public class UserSummaryCacheServiceImpl implements UserSummaryCacheService {
+
+    @Autowired
+    private UserMapper userMapper;
+
+    // 最多缓存的用户数
+    @Value("${user.summary-cache.max-size:50000}")
+    private int maxSize;
+
+    // 缓存有效期（毫秒），兜底多节点部署时的失效延迟
+    @Value("${user.summary-cache.ttl:300000}")
+    private long ttlMillis;
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Override
+    public UserSummary get(Long userId) {
+        if (userId == null) {
+            return null;
+        }
+        Entry entry = entries.get(userId);
+        if (entry != null && entry.expireAt >= System.currentTimeMillis()) {
+            hits.increment();
+            return entry.summary;
+        }
+        misses.increment();
+        long loadGeneration = generation.get();
+        UserSummary summary = UserSummary.from(userMapper.selectById(userId));
+        if (summary != null) {
+            put(userId, summary, loadGeneration);
+        }
+        return summary;
+    }
+
+    @Override
+    public Map<Long, UserSummary> getAll(Collection<Long> userIds) {
+        Map<Long, UserSummary> result = new HashMap<>();
+        if (userIds == null || userIds.isEmpty()) {
+            return result;
+        }
+        long now = System.currentTimeMillis();
+        Set<Long> unknown = new LinkedHashSet<>();
+        for (Long userId : userIds) {
+            if (userId == null || result.containsKey(userId)) {
+                continue;
+            }
+            Entry entry = entries.get(userId);
+            if (entry != null && entry.expireAt >= now) {
+                hits.increment();
+                result.put(userId, entry.summary);
+            } else {
+                unknown.add(userId);
+            }
+        }
+        if (unknown.isEmpty()) {
+            return result;
+        }
+
+        misses.add(unknown.size());
+        long loadGeneration = generation.get();
+        for (UserInfo userInfo : userMapper.selectByIds(unknown)) {
+            UserSummary summary = UserSummary.from(userInfo);
+            result.put(summary.getId(), summary);
+            put(summary.getId(), summary, loadGeneration);
+        }
+        return result;
+    }
+
+    @Override
+    public void evict(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        generation.incrementAndGet();
+        entries.remove(userId);
+        // 提交后再清一次，覆盖事务期间读到旧数据的加载
+        TransactionUtil.afterCommit(() -> {
+            generation.incrementAndGet();
+            entries.remove(userId);
+        });
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total > 0 ? (double) hitCount / total : 0.0);
+        stats.put("evictions", evictions.sum());
+        stats.put("size", entries.size());
+        stats.put("maxSize", maxSize);
+        return stats;
+    }
+
+    private void put(Long userId, UserSummary summary, long loadGeneration) {
+        if (generation.get() != loadGeneration) {
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            shrink();
+        }
+        entries.put(userId, new Entry(summary, System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * 容量已满时先清理过期条目，仍不足则按遍历顺序淘汰十分之一
+     */
+    private void shrink() {
+        long now = System.currentTimeMillis();
+        entries.entrySet().removeIf(e -> e.getValue().expireAt < now);
+        if (entries.size() < maxSize) {
+            return;
+        }
+        int toRemove = Math.max(1, maxSize / 10);
+        List<Long> victims = new ArrayList<>(toRemove);
+        Iterator<Long> iterator = entries.keySet().iterator();
+        while (iterator.hasNext() && victims.size() < toRemove) {
+            victims.add(iterator.next());
+        }
+        for (Long victim : victims) {
+            entries.remove(victim);
+        }
+        evictions.add(victims.size());
+    }
+
+    private static class Entry {
+        private final UserSummary summary;
+        private final long expireAt;
+
+        Entry(UserSummary summary, long expireAt) {
+            this.summary = summary;
+            this.expireAt = expireAt;
+        }
+    }
+}
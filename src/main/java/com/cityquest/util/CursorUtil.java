@@ -0,0 +1,70 @@
+package com.cityquest.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * 游标分页工具类
+ * 按 (create_time, id) 倒序翻页，游标编码为不透明的 URL 安全字符串
+ */
+public class CursorUtil {
+
+    /**
+     * 根据当前页最后一条记录生成游标
+     *
+     * @param createTime 最后一条记录的创建时间
+     * @param id         最后一条记录的ID
+     * @return 游标字符串
+     */
+    public static String encode(Date createTime, Number id) {
+        if (createTime == null || id == null) {
+            return null;
+        }
+        String raw = createTime.getTime() + ":" + id.longValue();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标，空字符串表示第一页返回null
+     *
+     * @param cursor 游标字符串
+     * @return 游标位置
+     * @throws IllegalArgumentException 游标格式不正确
+     */
+    public static Cursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            long time = Long.parseLong(raw.substring(0, separator));
+            long id = Long.parseLong(raw.substring(separator + 1));
+            return new Cursor(new Date(time), id);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("无效的分页游标");
+        }
+    }
+
+    /**
+     * 游标位置：上一页最后一条记录的创建时间和ID
+     */
+    public static class Cursor {
+        private final Date createTime;
+        private final long id;
+
+        public Cursor(Date createTime, long id) {
+            this.createTime = createTime;
+            this.id = id;
+        }
+
+        public Date getCreateTime() {
+            return createTime;
+        }
+
+        public long getId() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.cityquest.util;
+
+/**
+ * long 类型开放寻址哈希集合，避免 Long 装箱的内存开销
+ * 0 作为空槽标记，不能存入；非线程安全，由调用方加锁
+ */
+public class LongHashSet {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] slots;
+    private int size;
+
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        slots = new long[capacity];
+    }
+
+    public boolean add(long value) {
+        checkValue(value);
+        int index = indexOf(value);
+        if (slots[index] == value) {
+            return false;
+        }
+        slots[index] = value;
+        if (++size > slots.length * LOAD_FACTOR) {
+            resize(slots.length << 1);
+        }
+        return true;
+    }
+
+    public boolean contains(long value) {
+        return value != 0 && slots[indexOf(value)] == value;
+    }
+
+    public boolean remove(long value) {
+        if (value == 0) {
+            return false;
+        }
+        int mask = slots.length - 1;
+        int index = indexOf(value);
+        if (slots[index] != value) {
+            return false;
+        }
+        slots[index] = 0;
+        size--;
+        // 线性探测删除后回填后续元素，保证查找链不断开
+        int next = (index + 1) & mask;
+        while (slots[next] != 0) {
+            long moved = slots[next];
+            slots[next] = 0;
+            slots[indexOf(moved)] = moved;
+            next = (next + 1) & mask;
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int indexOf(long value) {
+        int mask = slots.length - 1;
+        int index = hash(value) & mask;
+        while (slots[index] != 0 && slots[index] != value) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void resize(int capacity) {
+        long[] old = slots;
+        slots = new long[capacity];
+        for (long value : old) {
+            if (value != 0) {
+                slots[indexOf(value)] = value;
+            }
+        }
+    }
+
+    private static int hash(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static void checkValue(long value) {
+        if (value == 0) {
+            throw new IllegalArgumentException("0 不能存入 LongHashSet");
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.cityquest.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 基于Redis的机器ID租约
+ * 启动时从 0~1023 中抢占一个空闲ID（SET NX + 过期时间），定时续期；
+ * 续期失败超过租约有效期后视为丢失，期间拒绝生成ID，并尝试重新抢占；
+ * 续期使用独立线程，不与其他 @Scheduled 任务共用调度线程，避免长任务阻塞续期导致租约过期
+ */
+@Component
+@ConditionalOnProperty(name = "snowflake.lease.enabled", havingValue = "true", matchIfMissing = true)
+public class RedisWorkerIdLease implements WorkerIdLease {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisWorkerIdLease.class);
+
+    private static final String LEASE_KEY_PREFIX = "snowflake_worker:";
+
+    // 仅当租约仍属于本节点时续期
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+            "  return redis.call('PEXPIRE', KEYS[1], ARGV[2]) " +
+            "end " +
+            "return 0", Long.class);
+
+    // 仅当租约仍属于本节点时释放
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+            "  return redis.call('DEL', KEYS[1]) " +
+            "end " +
+            "return 0", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    // 租约有效期（毫秒）
+    @Value("${snowflake.lease.ttl:30000}")
+    private long leaseTtlMillis;
+
+    // 续期间隔（毫秒）
+    @Value("${snowflake.lease.heartbeat-interval:10000}")
+    private long heartbeatIntervalMillis;
+
+    // 本节点标识，用于确认租约归属
+    private final String owner = UUID.randomUUID().toString();
+
+    // 当前持有的租约，机器ID与有效期一起发布，null 表示未持有
+    private final AtomicReference<Lease> lease = new AtomicReference<>();
+
+    private ScheduledExecutorService heartbeatExecutor;
+
+    @PostConstruct
+    public void init() {
+        try {
+            acquire();
+        } catch (Exception e) {
+            logger.error("Failed to acquire snowflake worker id lease, will retry on next heartbeat", e);
+        }
+        heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snowflake-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat, heartbeatIntervalMillis, heartbeatIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long getWorkerId() {
+        Lease current = lease.get();
+        if (current == null || System.currentTimeMillis() >= current.validUntil) {
+            throw new IllegalStateException("未持有有效的机器ID租约，拒绝生成ID");
+        }
+        return current.workerId;
+    }
+
+    /**
+     * 定时续期；未持有或已丢失租约时重新抢占
+     */
+    synchronized void heartbeat() {
+        Lease current = lease.get();
+        try {
+            if (current == null) {
+                acquire();
+                return;
+            }
+            long sentAt = System.currentTimeMillis();
+            Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT,
+                    Collections.singletonList(LEASE_KEY_PREFIX + current.workerId), owner,
+                    String.valueOf(leaseTtlMillis));
+            if (renewed != null && renewed > 0) {
+                lease.set(new Lease(current.workerId, sentAt + leaseTtlMillis));
+            } else {
+                // 键已过期或被其他节点占用，立即停止使用该ID
+                logger.error("Snowflake worker id {} lease lost, reacquiring", current.workerId);
+                lease.set(null);
+                acquire();
+            }
+        } catch (Exception e) {
+            // Redis暂时不可用：在本地有效期内继续使用，过期后 getWorkerId 自动拒绝
+            logger.warn("Failed to renew snowflake worker id lease {}", current != null ? current.workerId : -1L, e);
+        }
+    }
+
+    @PreDestroy
+    public void release() {
+        if (heartbeatExecutor != null) {
+            heartbeatExecutor.shutdownNow();
+        }
+        Lease current = lease.getAndSet(null);
+        if (current == null) {
+            return;
+        }
+        long id = current.workerId;
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(LEASE_KEY_PREFIX + id), owner);
+        } catch (Exception e) {
+            logger.warn("Failed to release snowflake worker id lease {}", id, e);
+        }
+    }
+
+    private synchronized void acquire() {
+        int total = (int) SnowflakeIdGenerator.MAX_MACHINE_ID + 1;
+        // 从随机位置开始探测，减少多节点同时启动时的冲突
+        int start = ThreadLocalRandom.current().nextInt(total);
+        for (int i = 0; i < total; i++) {
+            long candidate = (start + i) % total;
+            long sentAt = System.currentTimeMillis();
+            Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(
+                    LEASE_KEY_PREFIX + candidate, owner, Duration.ofMillis(leaseTtlMillis));
+            if (Boolean.TRUE.equals(acquired)) {
+                // 上一个持有者可能预支了到期后一小段时间的时间戳，等过这段时间再使用，避免生成重复ID
+                try {
+                    Thread.sleep(SnowflakeIdGenerator.MAX_CLOCK_BACKWARD_MS + 1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                lease.set(new Lease(candidate, sentAt + leaseTtlMillis));
+                logger.info("Acquired snowflake worker id lease {}", candidate);
+                return;
+            }
+        }
+        throw new IllegalStateException("没有可用的雪花算法机器ID");
+    }
+
+    private static final class Lease {
+        private final long workerId;
+        // 租约在本地视为有效的截止时间，早于Redis中键的过期时间
+        private final long validUntil;
+
+        Lease(long workerId, long validUntil) {
+            this.workerId = workerId;
+            this.validUntil = validUntil;
+        }
+    }
+}
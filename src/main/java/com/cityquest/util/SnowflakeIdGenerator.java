@@ -1,7 +1,10 @@
 package com.cityquest.util;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * 雪花算法ID生成器
  * 生成64位唯一ID，包含时间戳、机器ID、序列号
@@ -10,6 +13,9 @@ import org.springframework.stereotype.Component;
  * 0 - 41位时间戳（毫秒级，可用约69年）
  * 42 - 52位机器ID（10位，支持1024台机器）
  * 53 - 63位序列号（12位，每毫秒可生成4096个ID）
+ * 
+ * 时间戳与序列号合并为一个long，通过CAS无锁更新；支持一次预留多个ID，
+ * 并容忍小幅时钟回退。机器ID由 WorkerIdLease 提供，未持有有效租约时拒绝生成
  */
 @Component
 public class SnowflakeIdGenerator {
@@ -24,7 +30,7 @@ public class SnowflakeIdGenerator {
     private static final long SEQUENCE_BITS = 12L;
     
     // 机器ID的最大值（1023）
-    private static final long MAX_MACHINE_ID = (1L << MACHINE_ID_BITS) - 1;
+    public static final long MAX_MACHINE_ID = (1L << MACHINE_ID_BITS) - 1;
     
     // 序列号的最大值（4095）
     private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
@@ -35,41 +41,32 @@ public class SnowflakeIdGenerator {
     // 时间戳向左移22位（10+12）
     private static final long TIMESTAMP_SHIFT = SEQUENCE_BITS + MACHINE_ID_BITS;
     
-    // 机器ID（可以通过配置文件或环境变量设置，这里使用默认值）
-    private final long machineId;
+    // 最多容忍的时钟回退毫秒数：回退不超过该值时沿用上次的时间戳继续发号，超过则拒绝生成
+    static final long MAX_CLOCK_BACKWARD_MS = 50L;
     
-    // 序列号
-    private long sequence = 0L;
+    // 单次最多预留的ID数
+    public static final int MAX_BATCH_SIZE = (int) (MAX_SEQUENCE + 1);
     
-    // 上次生成ID的时间戳
-    private long lastTimestamp = -1L;
+    // 机器ID租约：多节点部署时从Redis租用，单节点可使用固定ID
+    private final WorkerIdLease workerIdLease;
+    
+    // 上次发出的（相对时间戳 << 12 | 序列号），通过CAS更新，无需加锁
+    // 序列号溢出时进位到时间戳，即预支下一毫秒
+    private final AtomicLong lastState = new AtomicLong(-1L);
     
     /**
      * 构造函数，使用默认机器ID（从系统属性或环境变量获取，默认为1）
      */
     public SnowflakeIdGenerator() {
-        // 尝试从系统属性获取机器ID
-        String machineIdStr = System.getProperty("snowflake.machine.id");
-        if (machineIdStr == null || machineIdStr.isEmpty()) {
-            // 尝试从环境变量获取
-            machineIdStr = System.getenv("SNOWFLAKE_MACHINE_ID");
-        }
-        
-        long id = 1L; // 默认机器ID
-        if (machineIdStr != null && !machineIdStr.isEmpty()) {
-            try {
-                id = Long.parseLong(machineIdStr);
-            } catch (NumberFormatException e) {
-                System.err.println("无效的机器ID配置，使用默认值1: " + machineIdStr);
-            }
-        }
-        
-        if (id < 0 || id > MAX_MACHINE_ID) {
-            throw new IllegalArgumentException("机器ID必须在0到" + MAX_MACHINE_ID + "之间");
-        }
-        
-        this.machineId = id;
-        System.out.println("雪花算法ID生成器初始化，机器ID: " + this.machineId);
+        this(new StaticWorkerIdLease());
+    }
+    
+    /**
+     * 构造函数，机器ID由租约提供
+     */
+    @Autowired
+    public SnowflakeIdGenerator(WorkerIdLease workerIdLease) {
+        this.workerIdLease = workerIdLease;
     }
     
     /**
@@ -77,48 +74,69 @@ public class SnowflakeIdGenerator {
      * 
      * @return 64位唯一ID
      */
-    public synchronized long nextId() {
-        long timestamp = System.currentTimeMillis();
-        
-        // 如果当前时间小于上一次ID生成的时间戳，说明系统时钟回退，抛出异常
-        if (timestamp < lastTimestamp) {
-            throw new RuntimeException("系统时钟回退，拒绝生成ID。回退时间: " + (lastTimestamp - timestamp) + "毫秒");
+    public long nextId() {
+        long machineId = workerIdLease.getWorkerId();
+        return toId(reserve(1), machineId);
+    }
+    
+    /**
+     * 一次预留多个连续ID，适合批量写入（如订单与订单明细）
+     * 
+     * @param count ID数量（1到4096）
+     * @return 按生成顺序递增的ID
+     */
+    public long[] nextIds(int count) {
+        if (count < 1 || count > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("批量ID数量必须在1到" + MAX_BATCH_SIZE + "之间");
         }
-        
-        // 如果是同一毫秒内生成的，则进行毫秒内序列
-        if (timestamp == lastTimestamp) {
-            sequence = (sequence + 1) & MAX_SEQUENCE;
-            // 毫秒内序列溢出
-            if (sequence == 0) {
-                // 阻塞到下一个毫秒，获得新的时间戳
-                timestamp = waitNextMillis(lastTimestamp);
-            }
-        } else {
-            // 时间戳改变，毫秒内序列重置
-            sequence = 0L;
+        long machineId = workerIdLease.getWorkerId();
+        long first = reserve(count);
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = toId(first + i, machineId);
         }
-        
-        // 上次生成ID的时间戳
-        lastTimestamp = timestamp;
-        
-        // 移位并通过或运算拼到一起组成64位的ID
-        return ((timestamp - START_TIMESTAMP) << TIMESTAMP_SHIFT)
-                | (machineId << MACHINE_ID_SHIFT)
-                | sequence;
+        return ids;
     }
     
     /**
-     * 阻塞到下一个毫秒，直到获得新的时间戳
+     * 预留count个连续的（时间戳、序列号）组合
      * 
-     * @param lastTimestamp 上次生成ID的时间戳
-     * @return 当前时间戳
+     * @return 第一个组合
      */
-    private long waitNextMillis(long lastTimestamp) {
-        long timestamp = System.currentTimeMillis();
-        while (timestamp <= lastTimestamp) {
-            timestamp = System.currentTimeMillis();
+    private long reserve(int count) {
+        while (true) {
+            long current = lastState.get();
+            long now = System.currentTimeMillis() - START_TIMESTAMP;
+            long lastTimestamp = current >> SEQUENCE_BITS;
+            
+            // 时钟回退超过容忍范围，拒绝生成
+            if (lastTimestamp - now > MAX_CLOCK_BACKWARD_MS) {
+                throw new RuntimeException("系统时钟回退，拒绝生成ID。回退时间: " + (lastTimestamp - now) + "毫秒");
+            }
+            
+            // 时间前进时从新毫秒的0号序列开始，否则（同一毫秒或小幅回退）接着上次继续
+            long base = now > lastTimestamp ? (now << SEQUENCE_BITS) - 1 : current;
+            long next = base + count;
+            
+            // 预支的时间超出容忍范围时让出CPU，等待时钟追上
+            if ((next >> SEQUENCE_BITS) - now > MAX_CLOCK_BACKWARD_MS) {
+                Thread.yield();
+                continue;
+            }
+            
+            if (lastState.compareAndSet(current, next)) {
+                return base + 1;
+            }
         }
-        return timestamp;
+    }
+    
+    /**
+     * 将（相对时间戳 << 12 | 序列号）与机器ID拼成64位ID
+     */
+    private long toId(long state, long machineId) {
+        return ((state >> SEQUENCE_BITS) << TIMESTAMP_SHIFT)
+                | (machineId << MACHINE_ID_SHIFT)
+                | (state & MAX_SEQUENCE);
     }
     
     /**
@@ -0,0 +1,50 @@
+package com.cityquest.util;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 固定机器ID（单节点部署或测试使用）
+ * 从系统属性 snowflake.machine.id 或环境变量 SNOWFLAKE_MACHINE_ID 读取，默认为1
+ */
+@Component
+@ConditionalOnProperty(name = "snowflake.lease.enabled", havingValue = "false")
+public class StaticWorkerIdLease implements WorkerIdLease {
+
+    private final long workerId;
+
+    public StaticWorkerIdLease() {
+        // 尝试从系统属性获取机器ID
+        String machineIdStr = System.getProperty("snowflake.machine.id");
+        if (machineIdStr == null || machineIdStr.isEmpty()) {
+            // 尝试从环境变量获取
+            machineIdStr = System.getenv("SNOWFLAKE_MACHINE_ID");
+        }
+
+        long id = 1L; // 默认机器ID
+        if (machineIdStr != null && !machineIdStr.isEmpty()) {
+            try {
+                id = Long.parseLong(machineIdStr);
+            } catch (NumberFormatException e) {
+                System.err.println("无效的机器ID配置，使用默认值1: " + machineIdStr);
+            }
+        }
+        this.workerId = checkRange(id);
+    }
+
+    public StaticWorkerIdLease(long workerId) {
+        this.workerId = checkRange(workerId);
+    }
+
+    @Override
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    private static long checkRange(long id) {
+        if (id < 0 || id > SnowflakeIdGenerator.MAX_MACHINE_ID) {
+            throw new IllegalArgumentException("机器ID必须在0到" + SnowflakeIdGenerator.MAX_MACHINE_ID + "之间");
+        }
+        return id;
+    }
+}
@@ -0,0 +1,16 @@
+package com.cityquest.util;
+
+/**
+ * 雪花算法机器ID租约
+ * 多节点部署时每个节点必须持有互不相同的机器ID
+ */
+public interface WorkerIdLease {
+
+    /**
+     * 获取当前持有的机器ID
+     *
+     * @return 机器ID（0到1023）
+     * @throws IllegalStateException 未持有有效租约时抛出，调用方应拒绝生成ID
+     */
+    long getWorkerId();
+}
@@ -0,0 +1,207 @@
+package com.cityquest.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 聊天集群路由
+ * 在Redis中记录 用户 -> 所在节点（chat_node_presence:{userId}，有序集合，成员为节点ID、分值为最近心跳时间），
+ * 推送时先投递本节点连接，再通过各节点专属频道（chat_node:{nodeId}）转发给其他节点；
+ * 超过有效期未心跳的节点（如已宕机）在推送时被过滤并清除，心跳使用独立线程，不受其他定时任务阻塞
+ */
+@Component
+public class ChatClusterRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatClusterRouter.class);
+
+    private static final String PRESENCE_KEY_PREFIX = "chat_node_presence:";
+    private static final String NODE_CHANNEL_PREFIX = "chat_node:";
+
+    @Autowired
+    private ChatSessionRegistry sessionRegistry;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 在线记录的过期时间（毫秒），由心跳续期，节点宕机后自动清除
+    @Value("${chat.cluster.presence-ttl:90000}")
+    private long presenceTtlMillis;
+
+    // 在线记录续期间隔（毫秒）
+    @Value("${chat.cluster.heartbeat-interval:30000}")
+    private long heartbeatIntervalMillis;
+
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "");
+
+    private ScheduledExecutorService heartbeatExecutor;
+
+    @PostConstruct
+    public void init() {
+        MessageListener listener = (message, pattern) -> {
+            try {
+                RoutedMessage routed = objectMapper.readValue(message.getBody(), RoutedMessage.class);
+                sessionRegistry.sendToUser(routed.getUserId(), routed.getPayload());
+            } catch (Exception e) {
+                logger.warn("Failed to handle routed chat message", e);
+            }
+        };
+        redisMessageListenerContainer.addMessageListener(listener, new ChannelTopic(NODE_CHANNEL_PREFIX + nodeId));
+
+        heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-presence");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat, heartbeatIntervalMillis, heartbeatIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeatExecutor.shutdownNow();
+        // 正常下线时移除本节点的在线记录
+        Set<Long> userIds = sessionRegistry.getConnectedUserIds();
+        if (userIds.isEmpty()) {
+            return;
+        }
+        try {
+            List<Long> snapshot = new ArrayList<>(userIds);
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (Long userId : snapshot) {
+                    conn.zRem(PRESENCE_KEY_PREFIX + userId, nodeId);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            logger.warn("Failed to clear chat presence on shutdown", e);
+        }
+    }
+
+    /**
+     * 用户在本节点建立连接后登记在线
+     */
+    public void markPresent(Long userId) {
+        try {
+            String key = PRESENCE_KEY_PREFIX + userId;
+            stringRedisTemplate.opsForZSet().add(key, nodeId, System.currentTimeMillis());
+            stringRedisTemplate.expire(key, Duration.ofMillis(presenceTtlMillis));
+        } catch (Exception e) {
+            logger.warn("Failed to register chat presence for userId={}", userId, e);
+        }
+    }
+
+    /**
+     * 用户在本节点已没有连接时移除在线记录
+     */
+    public void markAbsentIfDisconnected(Long userId) {
+        if (sessionRegistry.isConnected(userId)) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForZSet().remove(PRESENCE_KEY_PREFIX + userId, nodeId);
+        } catch (Exception e) {
+            logger.warn("Failed to remove chat presence for userId={}", userId, e);
+        }
+    }
+
+    /**
+     * 推送给用户在集群中的全部连接
+     */
+    public void deliver(Long userId, String payload) {
+        sessionRegistry.sendToUser(userId, payload);
+        try {
+            String key = PRESENCE_KEY_PREFIX + userId;
+            double aliveSince = System.currentTimeMillis() - presenceTtlMillis;
+            // 清除超过有效期未心跳的节点，只转发给仍在心跳的节点
+            List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                conn.zRemRangeByScore(key, Double.NEGATIVE_INFINITY, aliveSince);
+                conn.zRangeByScore(key, aliveSince, Double.POSITIVE_INFINITY);
+                return null;
+            });
+            @SuppressWarnings("unchecked")
+            Set<String> nodes = (Set<String>) results.get(1);
+            if (nodes == null || nodes.isEmpty()) {
+                return;
+            }
+            String routed = null;
+            for (String node : nodes) {
+                if (nodeId.equals(node)) {
+                    continue;
+                }
+                if (routed == null) {
+                    routed = objectMapper.writeValueAsString(new RoutedMessage(userId, payload));
+                }
+                stringRedisTemplate.convertAndSend(NODE_CHANNEL_PREFIX + node, routed);
+            }
+        } catch (Exception e) {
+            // 转发失败时接收方上线后仍可通过历史消息拉取
+            logger.warn("Failed to route chat message to other nodes for userId={}", userId, e);
+        }
+    }
+
+    /**
+     * 定时续期本节点全部在线用户的记录
+     */
+    void heartbeat() {
+        Set<Long> userIds = sessionRegistry.getConnectedUserIds();
+        if (userIds.isEmpty()) {
+            return;
+        }
+        List<Long> snapshot = new ArrayList<>(userIds);
+        try {
+            double now = System.currentTimeMillis();
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (Long userId : snapshot) {
+                    String key = PRESENCE_KEY_PREFIX + userId;
+                    conn.zAdd(key, now, nodeId);
+                    conn.pExpire(key, presenceTtlMillis);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            logger.warn("Failed to refresh chat presence for {} users", snapshot.size(), e);
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class RoutedMessage {
+        private Long userId;
+        private String payload;
+    }
+}
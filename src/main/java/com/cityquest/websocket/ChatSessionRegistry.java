@@ -0,0 +1,205 @@
+package com.cityquest.websocket;
+
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 聊天WebSocket连接注册表
+ * 维护 用户ID -> 连接 映射，每个连接配一个有界出站队列，由共享写线程池异步发送
+ */
+@Component
+public class ChatSessionRegistry {
+
+    private static final String OUTBOUND_ATTR = "outbound";
+
+    // 每个连接最多排队的消息数
+    @Value("${chat.ws.outbound.queue-capacity:256}")
+    private int queueCapacity;
+
+    // 每个连接最多排队的字节数
+    @Value("${chat.ws.outbound.buffer-size-limit:524288}")
+    private long bufferSizeLimit;
+
+    // 单次发送的最长时间（毫秒），超过视为慢消费者
+    @Value("${chat.ws.outbound.send-time-limit:10000}")
+    private long sendTimeLimit;
+
+    // 写线程数
+    @Value("${chat.ws.outbound.writer-threads:8}")
+    private int writerThreads;
+
+    // 每个连接每轮最多发送的消息数，发完后重新排队让出写线程
+    @Value("${chat.ws.outbound.drain-batch-size:32}")
+    private int drainBatchSize;
+
+    // 每个连接每轮最多发送的字节数
+    @Value("${chat.ws.outbound.drain-batch-bytes:65536}")
+    private long drainBatchBytes;
+
+    private final Map<Long, Set<OutboundSession>> userSessions = new ConcurrentHashMap<>();
+    private final Metrics metrics = new Metrics();
+    private Limits limits;
+    private ExecutorService writer;
+
+    @PostConstruct
+    public void init() {
+        limits = new Limits(queueCapacity, bufferSizeLimit, sendTimeLimit, drainBatchSize, drainBatchBytes);
+        AtomicInteger threadIndex = new AtomicInteger();
+        // 每个连接同一时刻最多只有一个发送任务在排队，任务数不超过连接数
+        writer = new ThreadPoolExecutor(writerThreads, writerThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "ws-writer-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdownNow();
+    }
+
+    /**
+     * 注册新连接
+     */
+    public void register(Long userId, WebSocketSession session) {
+        OutboundSession outbound = new OutboundSession(session, userId, writer, limits, metrics);
+        session.getAttributes().put(OUTBOUND_ATTR, outbound);
+        userSessions.computeIfAbsent(userId, k -> ConcurrentHashMap.newKeySet()).add(outbound);
+    }
+
+    /**
+     * 注销连接，丢弃尚未发送的消息
+     */
+    public void unregister(Long userId, WebSocketSession session) {
+        OutboundSession outbound = (OutboundSession) session.getAttributes().remove(OUTBOUND_ATTR);
+        if (outbound == null) {
+            return;
+        }
+        outbound.close();
+        userSessions.computeIfPresent(userId, (k, v) -> {
+            v.remove(outbound);
+            return v.isEmpty() ? null : v;
+        });
+    }
+
+    /**
+     * 向指定连接发送（入队后立即返回）
+     */
+    public boolean send(WebSocketSession session, String text) {
+        OutboundSession outbound = (OutboundSession) session.getAttributes().get(OUTBOUND_ATTR);
+        return outbound != null && outbound.enqueue(text);
+    }
+
+    /**
+     * 向用户在本节点的全部连接发送
+     *
+     * @return 成功入队的连接数
+     */
+    public int sendToUser(Long userId, String text) {
+        Set<OutboundSession> sessions = userSessions.get(userId);
+        if (sessions == null || sessions.isEmpty()) {
+            return 0;
+        }
+        int delivered = 0;
+        for (OutboundSession outbound : sessions) {
+            if (outbound.enqueue(text)) {
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    /**
+     * 用户是否在本节点有连接
+     */
+    public boolean isConnected(Long userId) {
+        Set<OutboundSession> sessions = userSessions.get(userId);
+        return sessions != null && !sessions.isEmpty();
+    }
+
+    /**
+     * 本节点有连接的用户ID
+     */
+    public Set<Long> getConnectedUserIds() {
+        return Collections.unmodifiableSet(userSessions.keySet());
+    }
+
+    /**
+     * 定时检查发送阻塞的连接
+     */
+    @Scheduled(fixedDelayString = "${chat.ws.outbound.stall-check-interval:1000}")
+    public void evictStalledSessions() {
+        long now = System.currentTimeMillis();
+        for (Set<OutboundSession> sessions : userSessions.values()) {
+            for (OutboundSession outbound : sessions) {
+                outbound.evictIfStalled(now);
+            }
+        }
+    }
+
+    /**
+     * 出站队列统计：连接数、入队/发送/失败/丢弃数、慢消费者断开数、排队深度
+     */
+    public Map<String, Object> getStats() {
+        int connections = 0;
+        long queued = 0;
+        for (Set<OutboundSession> sessions : userSessions.values()) {
+            for (OutboundSession outbound : sessions) {
+                connections++;
+                queued += outbound.getQueuedCount();
+            }
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("users", userSessions.size());
+        stats.put("connections", connections);
+        stats.put("queued", queued);
+        stats.put("enqueued", metrics.enqueued.sum());
+        stats.put("sent", metrics.sent.sum());
+        stats.put("failed", metrics.failed.sum());
+        stats.put("dropped", metrics.dropped.sum());
+        stats.put("evicted", metrics.evicted.sum());
+        stats.put("maxQueueDepth", metrics.maxDepth.get());
+        return stats;
+    }
+
+    @Data
+    static class Limits {
+        private final int queueCapacity;
+        private final long bufferSizeLimit;
+        private final long sendTimeLimit;
+        private final int drainBatchSize;
+        private final long drainBatchBytes;
+    }
+
+    static class Metrics {
+        final LongAdder enqueued = new LongAdder();
+        final LongAdder sent = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+        final LongAdder evicted = new LongAdder();
+        final AtomicLong maxDepth = new AtomicLong();
+
+        void recordDepth(int depth) {
+            maxDepth.accumulateAndGet(depth, Math::max);
+        }
+    }
+}
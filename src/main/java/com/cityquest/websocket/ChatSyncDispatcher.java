@@ -0,0 +1,224 @@
+package com.cityquest.websocket;
+
+import com.cityquest.dto.chat.ChatMessageDTO;
+import com.cityquest.dto.chat.ChatSessionDTO;
+import com.cityquest.dto.chat.ChatWebSocketResponse;
+import com.cityquest.entity.ChatMessage;
+import com.cityquest.entity.ChatSession;
+import com.cityquest.service.ChatService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 连接建立后的离线消息同步
+ * 先推送各会话未读摘要（sync_digest），再按会话分批推送已读水位之后的消息（sync_batch），最后推送 sync_done；
+ * 客户端可用 sync_batch 的 cursor 作为 afterMessageId 发送 sync 请求续传；
+ * 摘要来自 Redis，可能包含尚未写入数据库的消息，游标未到达摘要中的 lastMessageId 前 hasMore 始终为true，
+ * 同步或续传失败时推送 error
+ */
+@Component
+public class ChatSyncDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatSyncDispatcher.class);
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private ChatSessionRegistry sessionRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 同步线程数，限制重连高峰时的数据库并发
+    @Value("${chat.ws.sync.threads:4}")
+    private int threads;
+
+    // 等待执行的同步任务上限，超出时跳过推送，由客户端走 REST 拉取
+    @Value("${chat.ws.sync.queue-capacity:2000}")
+    private int queueCapacity;
+
+    // 单批推送的消息数
+    @Value("${chat.ws.sync.batch-size:50}")
+    private int batchSize;
+
+    // 连接时最多主动推送消息的会话数
+    @Value("${chat.ws.sync.max-sessions:20}")
+    private int maxSessions;
+
+    // 每个会话连接时最多主动推送的批数，其余由客户端续传
+    @Value("${chat.ws.sync.max-batches-per-session:4}")
+    private int maxBatchesPerSession;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "ws-sync-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 连接建立后异步推送摘要及未读消息
+     */
+    public void startSync(Long userId, WebSocketSession session) {
+        submit(userId, session, () -> runSync(userId, session));
+    }
+
+    /**
+     * 按客户端提供的游标续传一批消息
+     */
+    public void resume(Long userId, WebSocketSession session, Long sessionId, Long afterMessageId) {
+        submit(userId, session, () -> sendBatches(userId, session, sessionId,
+                afterMessageId != null ? afterMessageId : 0L, findLastMessageId(userId, sessionId), 1));
+    }
+
+    private void submit(Long userId, WebSocketSession session, Runnable task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    logger.warn("Chat sync failed for userId={}", userId, e);
+                    sendError(session, e instanceof RuntimeException && e.getMessage() != null
+                            ? e.getMessage() : "同步失败，请稍后重试");
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Chat sync queue full, skipping sync for userId={}", userId);
+            sendError(session, "同步繁忙，请稍后重试");
+        }
+    }
+
+    private void runSync(Long userId, WebSocketSession session) {
+        List<ChatSession> sessions = chatService.listUserSessions(userId);
+        List<ChatSessionDTO> digest = new ArrayList<>(sessions.size());
+        for (ChatSession chatSession : sessions) {
+            digest.add(toDigest(chatSession, userId));
+        }
+        if (!send(session, ChatWebSocketResponse.builder().type("sync_digest").sessions(digest).build())) {
+            return;
+        }
+
+        int synced = 0;
+        for (ChatSessionDTO item : digest) {
+            if (synced >= maxSessions) {
+                break;
+            }
+            if (item.getUnreadCount() == null || item.getUnreadCount() <= 0) {
+                continue;
+            }
+            long lastReadId = item.getLastReadId() != null ? item.getLastReadId() : 0L;
+            if (!sendBatches(userId, session, item.getId(), lastReadId, item.getLastMessageId(), maxBatchesPerSession)) {
+                return;
+            }
+            synced++;
+        }
+        send(session, ChatWebSocketResponse.builder().type("sync_done").build());
+    }
+
+    /**
+     * 推送 afterMessageId 之后最多 maxBatches 批消息，连接不可写时返回false
+     * upToId 为摘要中的最新消息ID，数据库中暂时读不到的消息仍在写入队列中，此时停止推送并以 hasMore 提示客户端稍后续传
+     */
+    private boolean sendBatches(Long userId, WebSocketSession session, Long sessionId, long afterMessageId,
+                                Long upToId, int maxBatches) {
+        long cursor = afterMessageId;
+        for (int i = 0; i < maxBatches; i++) {
+            if (!session.isOpen()) {
+                return false;
+            }
+            Map<String, Object> page = chatService.getSessionMessagesBySeek(sessionId, userId, null, cursor, batchSize);
+            @SuppressWarnings("unchecked")
+            List<ChatMessage> messages = (List<ChatMessage>) page.get("list");
+            boolean stored = Boolean.TRUE.equals(page.get("hasMore"));
+            if (!messages.isEmpty()) {
+                cursor = messages.get(messages.size() - 1).getId();
+            }
+            boolean hasMore = stored || (upToId != null && cursor < upToId);
+            ChatWebSocketResponse batch = ChatWebSocketResponse.builder()
+                    .type("sync_batch")
+                    .sessionId(sessionId)
+                    .messages(messages.stream().map(ChatMessageDTO::from).collect(Collectors.toList()))
+                    .cursor(cursor)
+                    .hasMore(hasMore)
+                    .build();
+            if (!send(session, batch)) {
+                return false;
+            }
+            if (!stored) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 从会话列表缓存中取会话的最新消息ID，取不到时返回null（只按数据库判断是否还有消息）
+     */
+    private Long findLastMessageId(Long userId, Long sessionId) {
+        for (ChatSession chatSession : chatService.listUserSessions(userId)) {
+            if (sessionId.equals(chatSession.getId())) {
+                return chatSession.getLastMessageId();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 摘要只保留同步所需字段
+     */
+    private ChatSessionDTO toDigest(ChatSession session, Long userId) {
+        boolean isA = userId.equals(session.getUserAId());
+        return ChatSessionDTO.builder()
+                .id(session.getId())
+                .peerId(isA ? session.getUserBId() : session.getUserAId())
+                .lastMessageId(session.getLastMessageId())
+                .lastMessagePreview(session.getLastMessagePreview())
+                .lastMessageTime(session.getLastMessageTime())
+                .unreadCount(isA ? session.getUnreadCountA() : session.getUnreadCountB())
+                .lastReadId(isA ? session.getLastReadIdA() : session.getLastReadIdB())
+                .peerLastReadId(isA ? session.getLastReadIdB() : session.getLastReadIdA())
+                .build();
+    }
+
+    private void sendError(WebSocketSession session, String message) {
+        send(session, ChatWebSocketResponse.builder().type("error").error(message).build());
+    }
+
+    private boolean send(WebSocketSession session, ChatWebSocketResponse response) {
+        try {
+            return sessionRegistry.send(session, objectMapper.writeValueAsString(response));
+        } catch (Exception e) {
+            logger.warn("Failed to send chat sync frame: sessionId={}", session.getId(), e);
+            return false;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.cityquest.websocket;
 
 import com.cityquest.dto.chat.ChatMessageDTO;
 import com.cityquest.dto.chat.ChatMessagePayload;
+import com.cityquest.dto.chat.ChatReadReceipt;
 import com.cityquest.dto.chat.ChatWebSocketResponse;
 import com.cityquest.entity.ChatMessage;
 import com.cityquest.entity.ChatSession;
@@ -17,11 +18,7 @@ import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.io.IOException;
-import java.util.Collections;
 import java.util.Date;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class ChatWebSocketHandler extends TextWebSocketHandler {
@@ -29,7 +26,14 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     private static final Logger logger = LoggerFactory.getLogger(ChatWebSocketHandler.class);
     private static final String USER_ID_ATTR = "userId";
 
-    private final Map<Long, Set<WebSocketSession>> userSessions = new ConcurrentHashMap<>();
+    @Autowired
+    private ChatSessionRegistry sessionRegistry;
+
+    @Autowired
+    private ChatClusterRouter clusterRouter;
+
+    @Autowired
+    private ChatSyncDispatcher syncDispatcher;
 
     @Autowired
     private ChatService chatService;
@@ -45,18 +49,11 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
             return;
         }
 
-        userSessions.compute(userId, (k, v) -> {
-            if (v == null) {
-                Set<WebSocketSession> set = ConcurrentHashMap.newKeySet();
-                set.add(session);
-                return set;
-            } else {
-                v.add(session);
-                return v;
-            }
-        });
+        sessionRegistry.register(userId, session);
+        clusterRouter.markPresent(userId);
 
         logger.info("WebSocket connected: userId={} sessionId={}", userId, session.getId());
+        syncDispatcher.startSync(userId, session);
     }
 
     @Override
@@ -79,8 +76,15 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
             case "read":
                 handleRead(userId, session, payload);
                 break;
+            case "sync":
+                if (payload.getSessionId() == null) {
+                    sendError(session, "sessionId不能为空");
+                } else {
+                    syncDispatcher.resume(userId, session, payload.getSessionId(), payload.getAfterMessageId());
+                }
+                break;
             case "ping":
-                session.sendMessage(new TextMessage("{\"type\":\"pong\"}"));
+                sessionRegistry.send(session, "{\"type\":\"pong\"}");
                 break;
             default:
                 logger.warn("Unknown message type: {}", payload.getType());
@@ -97,10 +101,8 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
         Long userId = (Long) session.getAttributes().get(USER_ID_ATTR);
         if (userId != null) {
-            userSessions.computeIfPresent(userId, (k, v) -> {
-                v.remove(session);
-                return v.isEmpty() ? null : v;
-            });
+            sessionRegistry.unregister(userId, session);
+            clusterRouter.markAbsentIfDisconnected(userId);
             logger.info("WebSocket disconnected: userId={} sessionId={} status={}", userId, session.getId(), status);
         }
     }
@@ -145,35 +147,49 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
             return;
         }
 
-        chatService.markSessionMessagesAsRead(payload.getSessionId(), userId);
-        ChatWebSocketResponse response = ChatWebSocketResponse.builder()
+        ChatReadReceipt receipt = chatService.markSessionMessagesAsRead(
+                payload.getSessionId(), userId, payload.getLastReadMessageId());
+        ChatWebSocketResponse response = toReadAck(receipt);
+        sendJson(session, response);
+        // 通知对方已读水位，用于展示"已读"
+        pushToUser(receipt.getPeerId(), response);
+    }
+
+    /**
+     * 推送已读回执给读者的其他连接及对方（REST 标记已读时调用）
+     */
+    public void notifyRead(ChatReadReceipt receipt) throws IOException {
+        ChatWebSocketResponse response = toReadAck(receipt);
+        pushToUser(receipt.getReaderId(), response);
+        pushToUser(receipt.getPeerId(), response);
+    }
+
+    private ChatWebSocketResponse toReadAck(ChatReadReceipt receipt) {
+        return ChatWebSocketResponse.builder()
                 .type("read_ack")
                 .message(ChatMessageDTO.builder()
-                        .sessionId(payload.getSessionId())
-                        .senderId(userId)
+                        .sessionId(receipt.getSessionId())
+                        .senderId(receipt.getReaderId())
+                        .receiverId(receipt.getPeerId())
                         .createTime(new Date())
                         .build())
+                .lastReadMessageId(receipt.getLastReadMessageId())
                 .build();
-        sendJson(session, response);
     }
 
-    private void pushToUser(Long userId, ChatWebSocketResponse response) {
-        Set<WebSocketSession> sessions = userSessions.get(userId);
-        if (sessions == null || sessions.isEmpty()) {
-            return;
-        }
-        sessions.forEach(ws -> {
-            try {
-                sendJson(ws, response);
-            } catch (IOException e) {
-                logger.error("Failed to push message to userId={} sessionId={}", userId, ws.getId(), e);
-            }
-        });
+    /**
+     * 推送给用户在集群中的全部连接
+     */
+    private void pushToUser(Long userId, ChatWebSocketResponse response) throws IOException {
+        clusterRouter.deliver(userId, objectMapper.writeValueAsString(response));
     }
 
+    /**
+     * 写入连接的出站队列，由写线程异步发送
+     */
     private void sendJson(WebSocketSession session, Object payload) throws IOException {
         String text = objectMapper.writeValueAsString(payload);
-        session.sendMessage(new TextMessage(text));
+        sessionRegistry.send(session, text);
     }
 
     private void sendError(WebSocketSession session, String message) throws IOException {
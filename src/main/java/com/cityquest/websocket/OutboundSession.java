@@ -0,0 +1,180 @@
+package com.cityquest.websocket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个连接的出站队列
+ * 所有写入先入队，再由写线程池串行发送，保证同一连接上不会并发调用 sendMessage，
+ * 也不会因接收方缓慢阻塞发送方线程。队列条数或字节数超限、单次发送超时的连接视为慢消费者被断开；
+ * 每轮发送有条数和字节数上限，发完一轮重新排队，避免单个连接长期占用写线程
+ */
+class OutboundSession {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboundSession.class);
+
+    private final WebSocketSession session;
+    private final Long userId;
+    private final Executor writer;
+    private final ChatSessionRegistry.Limits limits;
+    private final ChatSessionRegistry.Metrics metrics;
+
+    private final Queue<TextMessage> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedCount = new AtomicInteger();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    // 当前这次发送的开始时间，0 表示没有发送在进行
+    private volatile long sendStartTime;
+
+    OutboundSession(WebSocketSession session, Long userId, Executor writer,
+                    ChatSessionRegistry.Limits limits, ChatSessionRegistry.Metrics metrics) {
+        this.session = session;
+        this.userId = userId;
+        this.writer = writer;
+        this.limits = limits;
+        this.metrics = metrics;
+    }
+
+    WebSocketSession getSession() {
+        return session;
+    }
+
+    Long getUserId() {
+        return userId;
+    }
+
+    int getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    /**
+     * 入队待发送消息
+     *
+     * @return 是否入队成功；连接已关闭或因超限被断开时返回false
+     */
+    boolean enqueue(String text) {
+        if (closed.get() || !session.isOpen()) {
+            metrics.dropped.increment();
+            return false;
+        }
+        TextMessage message = new TextMessage(text);
+        int length = message.getPayloadLength();
+        int count = queuedCount.incrementAndGet();
+        long bytes = queuedBytes.addAndGet(length);
+        if (count > limits.getQueueCapacity() || bytes > limits.getBufferSizeLimit()) {
+            queuedCount.decrementAndGet();
+            queuedBytes.addAndGet(-length);
+            metrics.dropped.increment();
+            evict("outbound queue overflow (" + count + " messages, " + bytes + " bytes)");
+            return false;
+        }
+        queue.add(message);
+        metrics.enqueued.increment();
+        metrics.recordDepth(count);
+        scheduleDrain();
+        return true;
+    }
+
+    /**
+     * 单次发送超过时限时断开连接，关闭会让阻塞中的写入以异常返回
+     */
+    boolean evictIfStalled(long now) {
+        long start = sendStartTime;
+        if (start > 0 && now - start > limits.getSendTimeLimit()) {
+            evict("send blocked for " + (now - start) + " ms");
+            return true;
+        }
+        return false;
+    }
+
+    void close() {
+        if (closed.compareAndSet(false, true)) {
+            queue.clear();
+            queuedCount.set(0);
+            queuedBytes.set(0);
+        }
+    }
+
+    private void evict(String reason) {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        metrics.evicted.increment();
+        logger.warn("Evicting slow WebSocket consumer userId={} sessionId={}: {}", userId, session.getId(), reason);
+        queue.clear();
+        queuedCount.set(0);
+        queuedBytes.set(0);
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                writer.execute(this::drain);
+            } catch (RuntimeException e) {
+                draining.set(false);
+                logger.error("Failed to schedule WebSocket writer for sessionId={}", session.getId(), e);
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            if (!session.isOpen()) {
+                // 连接已断开，不再占用写线程发送
+                close();
+                return;
+            }
+            int frames = 0;
+            long bytes = 0;
+            TextMessage message;
+            while (!closed.get() && frames < limits.getDrainBatchSize() && bytes < limits.getDrainBatchBytes()
+                    && (message = queue.poll()) != null) {
+                int length = message.getPayloadLength();
+                queuedCount.decrementAndGet();
+                queuedBytes.addAndGet(-length);
+                frames++;
+                bytes += length;
+                long start = System.currentTimeMillis();
+                sendStartTime = start;
+                try {
+                    session.sendMessage(message);
+                    metrics.sent.increment();
+                } catch (IOException | IllegalStateException e) {
+                    metrics.failed.increment();
+                    logger.warn("Failed to send WebSocket message userId={} sessionId={}: {}",
+                            userId, session.getId(), e.getMessage());
+                } finally {
+                    sendStartTime = 0L;
+                }
+                long elapsed = System.currentTimeMillis() - start;
+                if (elapsed > limits.getSendTimeLimit()) {
+                    // 发送虽已完成但超过时限，不等下一轮再占用写线程
+                    evict("send took " + elapsed + " ms");
+                }
+            }
+        } finally {
+            draining.set(false);
+        }
+        // 本轮达到上限或释放标记后有新消息入队，重新排队等待下一轮
+        if (!closed.get() && !queue.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+}
@@ -57,6 +57,19 @@ CREATE TABLE IF NOT EXISTS record_info (
     FOREIGN KEY (admin_id) REFERENCES user_info(id)
 );
 
+-- 创建积分流水表（只追加；同一用户同一业务只记一次）
+CREATE TABLE IF NOT EXISTS points_transaction (
+    id BIGINT PRIMARY KEY,
+    user_id BIGINT NOT NULL COMMENT '用户ID',
+    amount INT NOT NULL COMMENT '变动积分：正数为增加，负数为扣减',
+    type VARCHAR(30) NOT NULL COMMENT '类型：task_reward、exchange、exchange_refund、admin_adjust',
+    biz_id BIGINT COMMENT '关联业务ID（打卡记录ID、订单ID等）',
+    remark VARCHAR(255) COMMENT '备注',
+    create_time DATETIME NOT NULL,
+    UNIQUE KEY uk_points_biz (user_id, type, biz_id),
+    FOREIGN KEY (user_id) REFERENCES user_info(id) ON DELETE CASCADE
+);
+
 -- 创建索引
 CREATE INDEX idx_user_username ON user_info(username);
 CREATE INDEX idx_user_role ON user_info(role);
@@ -65,6 +78,8 @@ CREATE INDEX idx_task_type ON task_info(type);
 CREATE INDEX idx_record_user ON record_info(user_id);
 CREATE INDEX idx_record_task ON record_info(task_id);
 CREATE INDEX idx_record_audit ON record_info(audit_status);
+CREATE INDEX idx_record_task_audit ON record_info(task_id, audit_status);
+CREATE INDEX idx_points_user_time ON points_transaction(user_id, create_time);
 
 -- 插入管理员账号（使用固定的雪花算法ID：1，确保管理员ID始终为1）
 -- 注意：实际生产环境应该使用雪花算法生成ID，这里为了兼容性使用固定值
@@ -150,6 +165,7 @@ CREATE TABLE IF NOT EXISTS notification_info (
 CREATE INDEX idx_friendship_follower ON friendship_info(follower_id);
 CREATE INDEX idx_friendship_followee ON friendship_info(followee_id);
 CREATE INDEX idx_feed_user ON user_feed_info(user_id);
+CREATE INDEX idx_feed_user_time ON user_feed_info(user_id, create_time);
 CREATE INDEX idx_feed_public ON user_feed_info(is_public, create_time);
 CREATE INDEX idx_feed_like_feed ON feed_like_info(feed_id);
 CREATE INDEX idx_feed_like_user ON feed_like_info(user_id);
@@ -169,6 +185,8 @@ CREATE TABLE IF NOT EXISTS chat_session (
     last_message_time DATETIME COMMENT '最近消息时间',
     unread_count_a INT DEFAULT 0 COMMENT '用户A未读数',
     unread_count_b INT DEFAULT 0 COMMENT '用户B未读数',
+    last_read_id_a BIGINT NOT NULL DEFAULT 0 COMMENT '用户A已读到的消息ID',
+    last_read_id_b BIGINT NOT NULL DEFAULT 0 COMMENT '用户B已读到的消息ID',
     create_time DATETIME NOT NULL,
     update_time DATETIME NOT NULL,
     UNIQUE KEY uk_chat_pair (user_a_id, user_b_id),
@@ -196,5 +214,5 @@ CREATE TABLE IF NOT EXISTS chat_message (
 CREATE INDEX idx_chat_session_user_a ON chat_session(user_a_id);
 CREATE INDEX idx_chat_session_user_b ON chat_session(user_b_id);
 CREATE INDEX idx_chat_session_last_time ON chat_session(last_message_time);
-CREATE INDEX idx_chat_message_session ON chat_message(session_id, create_time);
+CREATE INDEX idx_chat_message_session_id ON chat_message(session_id, id);
 CREATE INDEX idx_chat_message_receiver ON chat_message(receiver_id, status);
@@ -0,0 +1,6 @@
+-- 聊天记录按消息ID游标翻页（雪花ID按时间递增）所需索引，替换原 (session_id, create_time) 索引
+
+USE cityquest_db;
+
+CREATE INDEX idx_chat_message_session_id ON chat_message(session_id, id);
+DROP INDEX idx_chat_message_session ON chat_message;
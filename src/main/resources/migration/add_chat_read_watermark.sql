@@ -0,0 +1,14 @@
+-- 聊天已读水位：每个会话记录双方已读到的消息ID，标记已读只需更新会话一行
+
+USE cityquest_db;
+
+ALTER TABLE chat_session
+    ADD COLUMN last_read_id_a BIGINT NOT NULL DEFAULT 0 COMMENT '用户A已读到的消息ID' AFTER unread_count_b,
+    ADD COLUMN last_read_id_b BIGINT NOT NULL DEFAULT 0 COMMENT '用户B已读到的消息ID' AFTER last_read_id_a;
+
+-- 按已有的已读消息回填水位
+UPDATE chat_session s
+SET s.last_read_id_a = COALESCE((SELECT MAX(m.id) FROM chat_message m
+                                 WHERE m.session_id = s.id AND m.receiver_id = s.user_a_id AND m.status = 2), 0),
+    s.last_read_id_b = COALESCE((SELECT MAX(m.id) FROM chat_message m
+                                 WHERE m.session_id = s.id AND m.receiver_id = s.user_b_id AND m.status = 2), 0);
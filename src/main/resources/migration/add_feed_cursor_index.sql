@@ -0,0 +1,6 @@
+-- 动态列表游标分页（按 create_time、id 倒序）所需索引
+-- InnoDB 二级索引隐含主键 id，公开动态沿用 idx_feed_public(is_public, create_time)
+
+USE cityquest_db;
+
+CREATE INDEX idx_feed_user_time ON user_feed_info(user_id, create_time);
@@ -0,0 +1,7 @@
+-- 订单列表游标分页（按 create_time、id 倒序）所需索引
+-- InnoDB 二级索引隐含主键 id，全部订单沿用 idx_order_create_time(create_time)
+
+USE cityquest_db;
+
+CREATE INDEX idx_order_user_time ON exchange_order(user_id, create_time);
+CREATE INDEX idx_order_status_time ON exchange_order(status, create_time);
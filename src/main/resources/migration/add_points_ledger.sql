@@ -0,0 +1,17 @@
+-- 积分流水表：所有积分变动先记流水再改余额，(user_id, type, biz_id) 唯一保证同一业务不重复记账
+
+USE cityquest_db;
+
+CREATE TABLE IF NOT EXISTS points_transaction (
+    id BIGINT PRIMARY KEY,
+    user_id BIGINT NOT NULL COMMENT '用户ID',
+    amount INT NOT NULL COMMENT '变动积分：正数为增加，负数为扣减',
+    type VARCHAR(30) NOT NULL COMMENT '类型：task_reward、exchange、exchange_refund、admin_adjust',
+    biz_id BIGINT COMMENT '关联业务ID（打卡记录ID、订单ID等）',
+    remark VARCHAR(255) COMMENT '备注',
+    create_time DATETIME NOT NULL,
+    UNIQUE KEY uk_points_biz (user_id, type, biz_id),
+    FOREIGN KEY (user_id) REFERENCES user_info(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_points_user_time ON points_transaction(user_id, create_time);
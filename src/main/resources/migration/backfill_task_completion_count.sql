@@ -0,0 +1,17 @@
+-- 任务完成数改为读取 task_info.completion_count 后的一次性回填
+-- 之后由 TaskCompletionCounterService 增量维护并定时校正
+
+USE cityquest_db;
+
+-- 1. 校正查询使用的复合索引
+CREATE INDEX idx_record_task_audit ON record_info(task_id, audit_status);
+
+-- 2. 按已通过的打卡记录回填完成数
+UPDATE task_info t
+LEFT JOIN (
+    SELECT task_id, COUNT(*) AS cnt
+    FROM record_info
+    WHERE audit_status = 1
+    GROUP BY task_id
+) r ON t.id = r.task_id
+SET t.completion_count = COALESCE(r.cnt, 0);